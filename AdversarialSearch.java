@@ -1,5 +1,7 @@
 package edu.iastate.cs472.proj2;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * 
  * @author
@@ -10,14 +12,91 @@ package edu.iastate.cs472.proj2;
  * This class is to be extended by the classes AlphaBetaSearch and MonteCarloTreeSearch.
  */
 public abstract class AdversarialSearch {
-    protected CheckersData board;
+    protected GameBoard board;
+    protected int player = CheckersData.BLACK; // The side to move in board
+    protected SearchListener listener;
+    protected TimeManager timeManager; // Decides when a search on the clock has used its time, or null
+    protected MoveCache moveCache;     // Where the search looks up the moves of positions it has seen, or null
+
+    /*  Searches may be stopped from another thread, or run until a deadline on the
+        System.nanoTime clock; either way makeMove returns the best move found so far. */
+    private volatile boolean stopped;
+    private long deadline = Long.MAX_VALUE;
+    private AtomicBoolean stopSignal; // Stops the search once set, or null
 
     // An instance of this class will be created in the Checkers.Board
     // It would be better to keep the default constructor.
 
-    protected void setCheckersData(CheckersData board) {
+    protected void setCheckersData(GameBoard board) {
         this.board = board;
     }
+
+    /**
+     * Search for the given side, RED or BLACK. The GUI always lets the AI play BLACK.
+     */
+    void setPlayer(int player) {
+        this.player = player;
+    }
+
+    void setSearchListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Play on the clock: stop the search when the time manager says so, which should also
+     * have set the deadline. Null goes back to searching to the depth or playout limit.
+     */
+    void setTimeManager(TimeManager timeManager) {
+        this.timeManager = timeManager;
+    }
+
+    /**
+     * Look up the moves of positions in the given cache, and cache the moves of those it
+     * does not hold: AlphaBetaSearch at every node searched to full depth, MonteCarloTreeSearch
+     * at the start of every playout. Null generates them every time.
+     */
+    void setMoveCache(MoveCache moveCache) {
+        this.moveCache = moveCache;
+    }
+
+    /**
+     * Clear an earlier stop and let the next search run until the given System.nanoTime,
+     * or without a time limit with Long.MAX_VALUE.
+     */
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+        this.stopped = false;
+    }
+
+    /**
+     * Make the running search return as soon as possible. Safe to call from any thread.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Also stop the search once the given flag is set, or no longer watch one with null.
+     * Where an engine serves one caller after another, each search can be given a flag
+     * of its own, so that a caller stopping late cannot stop the next caller's search
+     * as stop() would.
+     */
+    void setStopSignal(AtomicBoolean stopSignal) {
+        this.stopSignal = stopSignal;
+    }
+
+    /**
+     * @return Whether the search has been stopped or has run out of time
+     */
+    protected boolean isStopped() {
+        if (!stopped && stopSignal != null && stopSignal.get()) {
+            stopped = true;
+        }
+        if (!stopped && deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+            stopped = true;
+        }
+        return stopped;
+    }
     
     /** 
      * 
@@ -35,4 +114,15 @@ public abstract class AdversarialSearch {
      * @return CheckersMove 
      */
     public abstract CheckersMove makeMove(CheckersMove[] legalMoves);
+
+    /**
+     * Search like makeMove, but for the best few moves rather than only the best one.
+     *
+     * @param legalMoves the legal moves of the side to move
+     * @param lines      the number of moves wanted, at least 1
+     * @return At most that many moves, best first, each with its score and line of play;
+     * empty if there are no legal moves
+     * @throws IllegalArgumentException if lines is below 1
+     */
+    abstract AnalysisLine[] analyze(CheckersMove[] legalMoves, int lines);
 }
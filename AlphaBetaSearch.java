@@ -1,22 +1,154 @@
 package edu.iastate.cs472.proj2;
 
+import java.util.Arrays;
+
 /**
  * @author Zeyu Yang
  *
  * Alpha-Beta Search Algorithm
+ *
+ * The search is a negamax principal variation search (NegaScout): the first move
+ * of every node is searched with the full window and the remaining moves with a
+ * null window, which are only searched again when they fail high. The root is
+ * searched by iterative deepening, and every iteration after the first starts
+ * with an aspiration window around the previous iteration's score. Scores are
+ * integers from the point of view of the side to move.
+ *
+ * The search plays any GameBoard, English checkers or international draughts; only
+ * evaluations set with setEvaluator are limited to the 8x8 board of CheckersData.
  */
 public class AlphaBetaSearch extends AdversarialSearch {
     /**
      * Constants for the alpha-beta search algorithm.
      */
-    private static final int SEARCH_DEPTH_LIMIT = 8;
+    static final int SEARCH_DEPTH_LIMIT = 6;
+    static final int MAX_SEARCH_DEPTH = 64;
+    private static final int QUIESCENCE_DEPTH_LIMIT = 16;
+    private static final int TRANSPOSITION_TABLE_SIZE = 1 << 20;
     private static final int KING_VALUE = 3;
     private static final int NORMAL_PIECE_VALUE = 1;
-    private static final double WIN_SCORE = 1.0;
-    private static final double LOSS_SCORE = -1.0;
-    private static final double INFINITY = Double.POSITIVE_INFINITY;
+    private static final int MATERIAL_SCALE = 1000;
+    private static final int WIN_SCORE = 10000;
+    private static final int LOSS_SCORE = -WIN_SCORE;
+    private static final int WIN_THRESHOLD = WIN_SCORE - 1000; // Scores beyond this are forced wins
+    private static final int INFINITY = WIN_SCORE + 1;
+    private static final int ASPIRATION_WINDOW = 50;
+    private static final int LMR_MIN_DEPTH = 3;  // Only reduce with at least this much depth left
+    private static final int LMR_MIN_MOVE = 3;   // Never reduce the first moves in the search order
+    private static final int HISTORY_LIMIT = 1 << 16;
+    private static final int STOP_CHECK_INTERVAL = 1024; // Nodes between checks of the clock
+    private static final double NEXT_ITERATION_SHARE = 0.5; // Part of the time target left to start another iteration
+    private static final int CACHE_MIN_DEPTH = 3; // Shallower results are cheaper to search again than to cache
+
+    /**
+     * nextStates[ply] holds the position at that many plies below the root.
+     * Positions past the current depth limit are only reached by the quiescence search.
+     */
+    private final GameBoard[] nextStates = new GameBoard[MAX_SEARCH_DEPTH + QUIESCENCE_DEPTH_LIMIT + 1];
+    private final TranspositionTable transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE);
+
+    /**
+     * moveBuffers[ply] holds the packed legal moves of nextStates[ply] (see
+     * GameBoard.getLegalMoves(int, long[])), so the search allocates nothing per node.
+     */
+    private final long[][] moveBuffers = new long[nextStates.length][GameBoard.MAX_MOVES];
+
+    /**
+     * History heuristic: historyTable[player][from * 64 + to] grows every time a quiet move
+     * from one square to another causes a cutoff. It orders moves and tunes reductions.
+     */
+    private final int[][] historyTable = new int[2][BoardGeometry.MAX_SQUARES * BoardGeometry.MAX_SQUARES];
+    private final int[][] moveOrders = new int[MAX_SEARCH_DEPTH + 1][GameBoard.MAX_MOVES];
+    private final int[][] orderScores = new int[MAX_SEARCH_DEPTH + 1][GameBoard.MAX_MOVES];
+
+    private AnalysisCache analysisCache;
+    private BoardGeometry geometry = BoardGeometry.ENGLISH; // The geometry of the board being searched
+    private Evaluator evaluator; // Null for the built-in material count
+    private IncrementalEvaluator incrementalEvaluator; // The evaluator, if it follows the search path
+    private boolean principalVariationSearch = true;
+    private boolean aspirationWindows = true;
+    private boolean lateMoveReductions = true;
+    private int maxDepth = SEARCH_DEPTH_LIMIT;
+    private int depthLimit;
+    private long nodeCount;
+    private boolean aborted; // Set once isStopped, the scores of the current iteration are then void
+    private boolean[] excludedRootMoves = new boolean[0]; // Root moves searchRoot skips, those of earlier lines in analyze
+
+    public AlphaBetaSearch() {
+        for (int i = 1; i < nextStates.length; i++) {
+            nextStates[i] = new CheckersData();
+        }
+    }
 
-    private final CheckersData[] nextStates = new CheckersData[SEARCH_DEPTH_LIMIT + 1];
+    /**
+     * Use the given evaluation for quiet positions instead of the built-in material count,
+     * which null goes back to. An IncrementalEvaluator is told about every move the search
+     * makes and takes back. Evaluators score CheckersData, so a search with one only plays
+     * English checkers.
+     */
+    void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        this.incrementalEvaluator = (evaluator instanceof IncrementalEvaluator) ? (IncrementalEvaluator) evaluator : null;
+    }
+
+    /**
+     * Keep the results of searches at least CACHE_MIN_DEPTH deep in the given cache as well
+     * as in the transposition table, and look there when the table has nothing deep enough.
+     * A root position found in the cache starts deepening after the cached depth.
+     *
+     * @param cache the cache, or null for none
+     */
+    void setAnalysisCache(AnalysisCache cache) {
+        analysisCache = cache;
+    }
+
+    /**
+     * Turn null-window searches of the later moves on or off. With both this and
+     * aspiration windows off the search is a plain full-window alpha-beta search.
+     */
+    void setPrincipalVariationSearch(boolean enabled) {
+        principalVariationSearch = enabled;
+    }
+
+    /**
+     * Turn aspiration windows at the root on or off.
+     */
+    void setAspirationWindows(boolean enabled) {
+        aspirationWindows = enabled;
+    }
+
+    /**
+     * Turn late move reductions on or off. Reductions need null-window searches,
+     * so they have no effect without principal variation search.
+     */
+    void setLateMoveReductions(boolean enabled) {
+        lateMoveReductions = enabled;
+    }
+
+    /**
+     * Deepen iteratively up to the given depth, at most MAX_SEARCH_DEPTH. The default
+     * depth suits the GUI; deeper searches are meant to be bounded by a deadline.
+     */
+    void setMaxDepth(int depth) {
+        maxDepth = Math.max(1, Math.min(depth, MAX_SEARCH_DEPTH));
+    }
+
+    /**
+     * @return The number of nodes, including quiescence nodes, visited by the last call to makeMove.
+     */
+    long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Remove everything learned by earlier searches.
+     */
+    void clearTranspositionTable() {
+        transpositionTable.clear();
+        for (int[] history : historyTable) {
+            Arrays.fill(history, 0);
+        }
+    }
 
     /**
      * Make a move based on the current state of the game.
@@ -24,6 +156,7 @@ public class AlphaBetaSearch extends AdversarialSearch {
      * @return The move to make.
      */
     public CheckersMove makeMove(CheckersMove[] legalMoves) {
+        nodeCount = 0;
         if (legalMoves == null || legalMoves.length == 0) {
             return null;
         }
@@ -36,147 +169,707 @@ public class AlphaBetaSearch extends AdversarialSearch {
     }
 
     /**
-     * Find the best move based on the current state of the game.
+     * Find the best move for the side to move by iterative deepening. A stopped search
+     * returns the best move of the deepest iteration, or the move that beat it in the
+     * unfinished one.
      * @param legalMoves The legal moves for the current state.
      * @return The index of the best move.
      */
     private int findBestMoveIndex(CheckersMove[] legalMoves) {
-        int bestMoveIndex = 0;
-        double alpha = -INFINITY;
-        double beta = INFINITY;
-        double bestValue = -INFINITY;
+        int[] bestMoveIndex = {0};
+        int score = 0;
+        startSearch(legalMoves);
+        long rootKey = board.hashKey(player);
+        int firstDepth = 1;
+        long cached = (analysisCache != null) ? analysisCache.probe(rootKey) : 0;
+        if (cached != 0 && AnalysisCache.bound(cached) == TranspositionTable.EXACT && AnalysisCache.bestMove(cached) < legalMoves.length) {
+            // Deepen from where an earlier search of this position stopped
+            depthLimit = Math.min(AnalysisCache.depth(cached), maxDepth);
+            score = AnalysisCache.score(cached);
+            bestMoveIndex[0] = AnalysisCache.bestMove(cached);
+            if (listener != null) {
+                listener.info(depthLimit, score, nodeCount, principalVariation(legalMoves[bestMoveIndex[0]]));
+            }
+            if (depthLimit == maxDepth || (Math.abs(score) > WIN_THRESHOLD && WIN_SCORE - Math.abs(score) <= depthLimit)) {
+                return bestMoveIndex[0];
+            }
+            firstDepth = depthLimit + 1;
+        }
+        for (depthLimit = firstDepth; depthLimit <= maxDepth; depthLimit++) {
+            if (!aspirationWindows || depthLimit == 1) {
+                score = searchRoot(legalMoves, -INFINITY, INFINITY, bestMoveIndex);
+            } else {
+                score = searchAspirated(legalMoves, score, bestMoveIndex);
+            }
+            if (aborted) {
+                break;
+            }
+            if (analysisCache != null && depthLimit >= CACHE_MIN_DEPTH) {
+                analysisCache.store(rootKey, depthLimit, score, TranspositionTable.EXACT, bestMoveIndex[0]);
+            }
+            if (listener != null) {
+                listener.info(depthLimit, score, nodeCount, principalVariation(legalMoves[bestMoveIndex[0]]));
+            }
+            if (Math.abs(score) > WIN_THRESHOLD && WIN_SCORE - Math.abs(score) <= depthLimit) {
+                break; // The game is decided within the horizon, searching deeper finds nothing new
+            }
+            if (timeManager != null) {
+                timeManager.update(bestMoveIndex[0], score);
+                if (timeManager.isDone(NEXT_ITERATION_SHARE)) {
+                    break;
+                }
+            }
+        }
 
+        return bestMoveIndex[0];
+    }
+
+    /**
+     * Prepare a search of the root position.
+     */
+    private void startSearch(CheckersMove[] legalMoves) {
+        aborted = false;
+        if (excludedRootMoves.length < legalMoves.length) {
+            excludedRootMoves = new boolean[legalMoves.length];
+        }
+        Arrays.fill(excludedRootMoves, false);
+
+        // Keep what earlier moves learned, but let this search's cutoffs dominate
+        ageHistory(historyTable[0]);
+        ageHistory(historyTable[1]);
+
+        if (evaluator != null && !(board instanceof CheckersData)) {
+            throw new IllegalStateException("The evaluator only scores 8x8 boards");
+        }
+        if (nextStates[1].getClass() != board.getClass()) {
+            for (int i = 1; i < nextStates.length; i++) {
+                nextStates[i] = board.copy();
+            }
+        }
+        geometry = board.geometry();
         nextStates[0] = board;
-        for (int i = 0; i < legalMoves.length; i++) {
-            CheckersData clonedData = new CheckersData(nextStates[0]);
-            clonedData.makeMove(legalMoves[i]);
-            nextStates[1] = clonedData;
+        if (incrementalEvaluator != null) {
+            incrementalEvaluator.reset((CheckersData) board);
+        }
+    }
+
+    /**
+     * Find the best few moves by iterative deepening. Every iteration searches the root once
+     * per line, each time without the moves of the lines found before, so a line's score is
+     * exact and the passes share the transposition table; a later pass mostly finds the
+     * positions below the root already searched. A stopped search returns the lines of the
+     * deepest iteration, or those its first iteration had found.
+     */
+    @Override
+    AnalysisLine[] analyze(CheckersMove[] legalMoves, int lines) {
+        if (lines < 1) {
+            throw new IllegalArgumentException("Cannot analyze " + lines + " lines");
+        }
+        nodeCount = 0;
+        if (legalMoves == null || legalMoves.length == 0) {
+            return new AnalysisLine[0];
+        }
+        lines = Math.min(lines, legalMoves.length);
+        startSearch(legalMoves);
 
-            double value = minValue(nextStates[1].getLegalMoves(CheckersData.RED), 1, alpha, beta);
-            if (value > bestValue) {
-                bestMoveIndex = i;
-                bestValue = value;
+        int[] lineMoves = new int[lines];
+        int[] lineScores = new int[lines];
+        AnalysisLine[] result = new AnalysisLine[0];
+        for (depthLimit = 1; depthLimit <= maxDepth; depthLimit++) {
+            Arrays.fill(excludedRootMoves, false);
+            int found = 0;
+            boolean decided = true;
+            while (found < lines) {
+                // Start from the move this line had in the previous iteration, if it is still free
+                int[] bestMoveIndex = {lineMoves[found]};
+                if (depthLimit == 1 || excludedRootMoves[bestMoveIndex[0]]) {
+                    bestMoveIndex[0] = 0;
+                    while (excludedRootMoves[bestMoveIndex[0]]) {
+                        bestMoveIndex[0]++;
+                    }
+                }
+                int score;
+                if (!aspirationWindows || depthLimit == 1) {
+                    score = searchRoot(legalMoves, -INFINITY, INFINITY, bestMoveIndex);
+                } else {
+                    score = searchAspirated(legalMoves, lineScores[found], bestMoveIndex);
+                }
+                if (aborted) {
+                    break;
+                }
+                lineMoves[found] = bestMoveIndex[0];
+                lineScores[found] = score;
+                excludedRootMoves[bestMoveIndex[0]] = true;
+                decided &= Math.abs(score) > WIN_THRESHOLD && WIN_SCORE - Math.abs(score) <= depthLimit;
+                found++;
+            }
+            if (aborted && depthLimit > 1) {
+                break;
             }
-            if (bestValue >= beta) {
+            result = new AnalysisLine[found];
+            for (int i = 0; i < found; i++) {
+                CheckersMove move = legalMoves[lineMoves[i]];
+                result[i] = new AnalysisLine(move, lineScores[i], depthLimit, principalVariation(move));
+            }
+            if (aborted) {
                 break;
             }
-            alpha = Math.max(alpha, bestValue);
+            if (listener != null) {
+                listener.info(depthLimit, lineScores[0], nodeCount, result[0].principalVariation);
+            }
+            if (decided) {
+                break; // Every line is decided within the horizon
+            }
+            if (timeManager != null) {
+                timeManager.update(lineMoves[0], lineScores[0]);
+                if (timeManager.isDone(NEXT_ITERATION_SHARE)) {
+                    break;
+                }
+            }
+        }
+        Arrays.fill(excludedRootMoves, false);
+
+        if (result.length == 0) {
+            // Stopped before the first move was searched
+            result = new AnalysisLine[] {new AnalysisLine(legalMoves[0], 0, 0, new CheckersMove[] {legalMoves[0]})};
+        }
+        return result;
+    }
+
+    /**
+     * Search the root with an aspiration window around the previous iteration's score.
+     * @return The score of the root.
+     */
+    private int searchAspirated(CheckersMove[] legalMoves, int score, int[] bestMoveIndex) {
+        // Widen the side of the window that failed until the score falls inside it
+        int window = ASPIRATION_WINDOW;
+        int alpha = Math.max(score - window, -INFINITY);
+        int beta = Math.min(score + window, INFINITY);
+        while (true) {
+            int value = searchRoot(legalMoves, alpha, beta, bestMoveIndex);
+            if (aborted) {
+                return score;
+            }
+            if (value <= alpha && alpha > -INFINITY) {
+                window *= 4;
+                alpha = Math.max(value - window, -INFINITY);
+            } else if (value >= beta && beta < INFINITY) {
+                window *= 4;
+                beta = Math.min(value + window, INFINITY);
+            } else {
+                return value;
+            }
         }
+    }
 
-        return bestMoveIndex;
+    /**
+     * Follow the best moves stored in the transposition table from the root.
+     * @param first The best root move.
+     * @return At most depthLimit moves.
+     */
+    private CheckersMove[] principalVariation(CheckersMove first) {
+        CheckersMove[] line = new CheckersMove[depthLimit];
+        GameBoard state = board.copy();
+        int side = player;
+        CheckersMove move = first;
+        int length = 0;
+        while (move != null && length < line.length) {
+            line[length++] = move;
+            state.makeMove(move);
+            side = opponentOf(side);
+            move = null;
+            int slot = transpositionTable.find(state.hashKey(side));
+            CheckersMove[] moves = (slot >= 0) ? state.getLegalMoves(side) : null;
+            if (moves != null && transpositionTable.bestMove(slot) < moves.length) {
+                move = moves[transpositionTable.bestMove(slot)];
+            }
+        }
+        return Arrays.copyOf(line, length);
     }
 
     /**
-     * Max-value function for alpha-beta search.
+     * Search every root move that is not excluded with the window (alpha, beta), starting with
+     * the previous best move.
      * @param legalMoves The legal moves for the current state.
-     * @param depth The current depth of the search.
+     * @param alpha The lower bound of the window.
+     * @param beta The upper bound of the window.
+     * @param bestMoveIndex Holds the index of the previous best move, and is updated when a move raises alpha.
+     * @return The score of the root.
+     */
+    private int searchRoot(CheckersMove[] legalMoves, int alpha, int beta, int[] bestMoveIndex) {
+        int previousBest = bestMoveIndex[0];
+        int value = -INFINITY;
+
+        int searched = 0;
+        for (int n = 0; n < legalMoves.length; n++) {
+            int i = moveAt(n, previousBest, legalMoves.length);
+            if (excludedRootMoves[i]) {
+                continue;
+            }
+            playMove(0, legalMoves[i]);
+            int childValue = searchChild(searched++, 1, depthLimit - 1, 0, opponentOf(player), alpha, beta);
+            takeBackMove();
+            if (aborted) {
+                break;
+            }
+            if (childValue > value) {
+                value = childValue;
+                if (value > alpha) {
+                    bestMoveIndex[0] = i;
+                }
+            }
+            alpha = Math.max(alpha, value);
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Make a move from the position at the given ply into nextStates[ply + 1].
+     */
+    private void playMove(int ply, CheckersMove move) {
+        nextStates[ply + 1].copyFrom(nextStates[ply]);
+        nextStates[ply + 1].makeMove(move);
+        if (incrementalEvaluator != null) {
+            incrementalEvaluator.update((CheckersData) nextStates[ply], (CheckersData) nextStates[ply + 1]);
+        }
+    }
+
+    /**
+     * Make a packed move from the position at the given ply into nextStates[ply + 1].
+     */
+    private void playMove(int ply, long move) {
+        nextStates[ply + 1].copyFrom(nextStates[ply]);
+        nextStates[ply + 1].makeMove(move);
+        if (incrementalEvaluator != null) {
+            incrementalEvaluator.update((CheckersData) nextStates[ply], (CheckersData) nextStates[ply + 1]);
+        }
+    }
+
+    /**
+     * Undo the last playMove. The boards need no restoring since every ply has its own.
+     */
+    private void takeBackMove() {
+        if (incrementalEvaluator != null) {
+            incrementalEvaluator.undo();
+        }
+    }
+
+    /**
+     * Search the position in nextStates[ply] reached by the n-th move of its parent. The first
+     * move is searched with the full window; later moves get a null window and are searched again
+     * with the full window only if they fail high. A reduced move is first searched with a null
+     * window at the reduced depth, and only searched to the full depth if it beats alpha.
+     * @param n Position of the move in the parent's search order.
+     * @param ply Distance of the position from the root.
+     * @param depth Remaining depth of the position.
+     * @param reduction Number of plies to reduce a late move by.
+     * @return The value of the position for the parent's side to move.
+     */
+    private int searchChild(int n, int ply, int depth, int reduction, int player, int alpha, int beta) {
+        if (n == 0 || !principalVariationSearch) {
+            return -search(ply, depth, player, -beta, -alpha);
+        }
+        int value;
+        if (reduction > 0) {
+            value = -search(ply, depth - reduction, player, -alpha - 1, -alpha);
+            if (value <= alpha) {
+                return value;
+            }
+        }
+        value = -search(ply, depth, player, -alpha - 1, -alpha);
+        if (value > alpha && value < beta) {
+            value = -search(ply, depth, player, -beta, -alpha);
+        }
+        return value;
+    }
+
+    /**
+     * Negamax principal variation search.
+     * @param ply Distance of the position from the root.
+     * @param depth Remaining depth of the search.
+     * @param player The side to move, RED or BLACK.
      * @param alpha The current alpha value.
      * @param beta The current beta value.
-     * @return The maximum value.
+     * @return The value of the position for the side to move.
      */
-    private double maxValue(CheckersMove[] legalMoves, int depth, double alpha, double beta) {
-        if (isTerminalState(legalMoves)) {
-            return evaluateState(nextStates[depth]);
+    private int search(int ply, int depth, int player, int alpha, int beta) {
+        if (depth <= 0) {
+            return quiescence(ply, player, alpha, beta);
+        }
+        if (checkAbort()) {
+            return 0;
         }
+        nodeCount++;
 
-        double value = -INFINITY;
-        for (CheckersMove move : legalMoves) {
-            CheckersData clonedData = new CheckersData(nextStates[depth]);
-            clonedData.makeMove(move);
-            nextStates[depth + 1] = clonedData;
+        GameBoard state = nextStates[ply];
+        long key = state.hashKey(player);
+        long[] moves = moveBuffers[ply];
+        int count = (moveCache != null) ? moveCache.legalMoves(state, player, key, moves) : state.getLegalMoves(player, moves);
+        if (count == 0) {
+            return LOSS_SCORE + ply;
+        }
 
-            value = Math.max(value, minValue(nextStates[depth + 1].getLegalMoves(CheckersData.RED), depth + 1, alpha, beta));
-            if (value >= beta) {
-                return value;
+        int slot = transpositionTable.find(key);
+        if (analysisCache != null && depth >= CACHE_MIN_DEPTH && (slot < 0 || transpositionTable.depth(slot) < depth)) {
+            slot = probeCache(key, slot);
+        }
+        int firstMove = -1;
+        if (slot >= 0) {
+            if (transpositionTable.depth(slot) >= depth && isCutoff(slot, ply, alpha, beta)) {
+                return scoreFromTable(transpositionTable.score(slot), ply);
+            }
+            firstMove = transpositionTable.bestMove(slot);
+        }
+
+        int[] history = historyTable[historyIndex(player)];
+        int[] order = orderMoves(ply, moves, count, firstMove, history);
+        boolean jumps = GameBoard.isJump(moves[0]);
+
+        int opponent = opponentOf(player);
+        int alphaOriginal = alpha;
+        int value = -INFINITY;
+        int bestMove = 0;
+        for (int n = 0; n < count; n++) {
+            int i = order[n];
+            long move = moves[i];
+            int historyScore = history[historyKey(move)];
+            int reduction = (jumps || isPromotion(state, move)) ? 0 : lateMoveReduction(n, depth, historyScore);
+            playMove(ply, move);
+            int childValue = searchChild(n, ply + 1, depth - 1, reduction, opponent, alpha, beta);
+            takeBackMove();
+            if (aborted) {
+                return 0;
+            }
+            if (childValue > value) {
+                value = childValue;
+                bestMove = i;
             }
             alpha = Math.max(alpha, value);
+            if (alpha >= beta) {
+                if (!jumps) {
+                    addHistory(history, historyKey(move), depth);
+                }
+                break;
+            }
+        }
+
+        int bound = boundOf(value, alphaOriginal, beta);
+        transpositionTable.store(key, depth, scoreToTable(value, ply), bound, bestMove);
+        if (analysisCache != null && depth >= CACHE_MIN_DEPTH) {
+            analysisCache.store(key, depth, scoreToTable(value, ply), bound, bestMove);
         }
         return value;
     }
 
     /**
-     * Min-value function for alpha-beta search.
-     * @param legalMoves The legal moves for the current state.
-     * @param depth The current depth of the search.
+     * Copy the cached result of a position into the transposition table if it is deeper
+     * than what the table holds.
+     * @param slot The position's slot in the table, or -1.
+     * @return The position's slot in the table, or -1.
+     */
+    private int probeCache(long key, int slot) {
+        long cached = analysisCache.probe(key);
+        if (cached == 0 || (slot >= 0 && AnalysisCache.depth(cached) <= transpositionTable.depth(slot))) {
+            return slot;
+        }
+        transpositionTable.store(key, AnalysisCache.depth(cached), AnalysisCache.score(cached), AnalysisCache.bound(cached), AnalysisCache.bestMove(cached));
+        return transpositionTable.find(key);
+    }
+
+    /**
+     * Number of plies to reduce a quiet move by. Moves searched early, moves near the horizon
+     * and moves that often caused cutoffs elsewhere are searched to the full depth; the later
+     * a move comes and the deeper the remaining search, the more it is reduced.
+     * @param n Position of the move in the search order.
+     * @param depth Remaining depth of the node.
+     * @param historyScore History score of the move.
+     * @return The reduction, at least 0 and less than depth - 1.
+     */
+    private int lateMoveReduction(int n, int depth, int historyScore) {
+        if (!lateMoveReductions || depth < LMR_MIN_DEPTH || n < LMR_MIN_MOVE) {
+            return 0;
+        }
+        int reduction = 1;
+        if (n >= 2 * LMR_MIN_MOVE && depth >= 2 * LMR_MIN_DEPTH - 1) {
+            reduction++;
+        }
+        if (historyScore > HISTORY_LIMIT / 8) {
+            reduction--; // Often a cutoff move elsewhere in the tree
+        } else if (historyScore == 0 && n >= 3 * LMR_MIN_MOVE) {
+            reduction++; // Never a cutoff move, and ordered far back
+        }
+        return Math.max(0, Math.min(reduction, depth - 2));
+    }
+
+    /**
+     * Order the moves of a node: the transposition table's best move first, then the
+     * others by decreasing history score, keeping generation order between equal scores.
+     * @return order[n] is the index of the n-th move to search.
+     */
+    private int[] orderMoves(int ply, long[] moves, int count, int firstMove, int[] history) {
+        int[] order = moveOrders[ply];
+        int[] scores = orderScores[ply];
+
+        for (int i = 0; i < count; i++) {
+            int score = (i == firstMove) ? Integer.MAX_VALUE : history[historyKey(moves[i])];
+            // Insertion sort, the move lists are short
+            int n = i;
+            while (n > 0 && scores[n - 1] < score) {
+                order[n] = order[n - 1];
+                scores[n] = scores[n - 1];
+                n--;
+            }
+            order[n] = i;
+            scores[n] = score;
+        }
+        return order;
+    }
+
+    /**
+     * @return True if the move turns a normal piece into a king.
+     */
+    private boolean isPromotion(GameBoard state, long move) {
+        int piece = state.pieceAt(GameBoard.moveFrom(move));
+        int toRow = geometry.squareRow[GameBoard.moveTo(move)];
+        return (piece == CheckersData.RED && toRow == 0) || (piece == CheckersData.BLACK && toRow == geometry.size - 1);
+    }
+
+    /**
+     * @return Index into a player's history table: from square * 64 + to square.
+     */
+    private static int historyKey(long move) {
+        return GameBoard.moveFrom(move) * BoardGeometry.MAX_SQUARES + GameBoard.moveTo(move);
+    }
+
+    private static int historyIndex(int player) {
+        return (player == CheckersData.BLACK) ? 1 : 0;
+    }
+
+    /**
+     * Reward a move that caused a cutoff; deeper cutoffs count more. All scores are
+     * halved once one of them reaches HISTORY_LIMIT.
+     */
+    private static void addHistory(int[] history, int key, int depth) {
+        history[key] += depth * depth;
+        if (history[key] >= HISTORY_LIMIT) {
+            ageHistory(history);
+        }
+    }
+
+    private static void ageHistory(int[] history) {
+        for (int i = 0; i < history.length; i++) {
+            history[i] /= 2;
+        }
+    }
+
+    /**
+     * Quiescence search past the depth limit. Jumps are forced in checkers, so a position
+     * is only scored once the side to move has no jump left; until then every jump is searched.
+     * @param ply Distance of the position from the root.
+     * @param player The side to move, RED or BLACK.
      * @param alpha The current alpha value.
      * @param beta The current beta value.
-     * @return The minimum value.
+     * @return The value of the position for the side to move.
      */
-    private double minValue(CheckersMove[] legalMoves, int depth, double alpha, double beta) {
-        if (isTerminalState(legalMoves)) {
-            return evaluateState(nextStates[depth]);
+    private int quiescence(int ply, int player, int alpha, int beta) {
+        if (checkAbort()) {
+            return 0;
         }
+        nodeCount++;
 
-        double value = INFINITY;
-        for (CheckersMove move : legalMoves) {
-            CheckersData clonedData = new CheckersData(nextStates[depth]);
-            clonedData.makeMove(move);
-            nextStates[depth + 1] = clonedData;
+        GameBoard state = nextStates[ply];
+        long[] moves = moveBuffers[ply];
+        int count = state.getLegalMoves(player, moves);
+        if (count == 0) {
+            return LOSS_SCORE + ply;
+        }
+        if (!GameBoard.isJump(moves[0]) || ply == nextStates.length - 1) {
+            // Stand pat on a quiet position
+            return evaluate(state, player);
+        }
 
-            value = Math.min(value, maxValue(nextStates[depth + 1].getLegalMoves(CheckersData.BLACK), depth + 1, alpha, beta));
-            if (value <= alpha) {
-                return value;
+        long key = state.hashKey(player);
+        int slot = transpositionTable.find(key);
+        int firstMove = -1;
+        if (slot >= 0) {
+            if (isCutoff(slot, ply, alpha, beta)) {
+                return scoreFromTable(transpositionTable.score(slot), ply);
             }
-            beta = Math.min(beta, value);
+            firstMove = transpositionTable.bestMove(slot);
         }
+
+        int opponent = opponentOf(player);
+        int alphaOriginal = alpha;
+        int value = -INFINITY;
+        int bestMove = 0;
+        for (int n = 0; n < count; n++) {
+            int i = moveAt(n, firstMove, count);
+            playMove(ply, moves[i]);
+            int childValue = -quiescence(ply + 1, opponent, -beta, -alpha);
+            takeBackMove();
+            if (aborted) {
+                return 0;
+            }
+            if (childValue > value) {
+                value = childValue;
+                bestMove = i;
+            }
+            alpha = Math.max(alpha, value);
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        transpositionTable.store(key, 0, scoreToTable(value, ply), boundOf(value, alphaOriginal, beta), bestMove);
         return value;
     }
 
     /**
-     * Check if the current state is a terminal state.
-     * @param legalMoves The legal moves for the current state.
-     * @return True if the current state is a terminal state, false otherwise.
+     * Look at the clock every STOP_CHECK_INTERVAL nodes.
+     * @return True once the search is stopped; every node then returns at once and stores nothing.
      */
-    private boolean isTerminalState(CheckersMove[] legalMoves) {
-        return legalMoves == null || nextStates[SEARCH_DEPTH_LIMIT] != null;
+    private boolean checkAbort() {
+        if (!aborted && nodeCount % STOP_CHECK_INTERVAL == 0 && isStopped()) {
+            aborted = true;
+        }
+        return aborted;
     }
 
     /**
-     * Evaluate the current state of the game.
-     * @param state The current state of the game.
-     * @return The utility value of the state.
+     * @param slot A transposition table slot.
+     * @param ply Distance of the position from the root.
+     * @param alpha The current alpha value.
+     * @param beta The current beta value.
+     * @return True if the stored score can be returned without searching the position.
+     */
+    private boolean isCutoff(int slot, int ply, int alpha, int beta) {
+        int score = scoreFromTable(transpositionTable.score(slot), ply);
+        switch (transpositionTable.bound(slot)) {
+            case TranspositionTable.EXACT:
+                return true;
+            case TranspositionTable.LOWER_BOUND:
+                return score >= beta;
+            case TranspositionTable.UPPER_BOUND:
+                return score <= alpha;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return The bound type of a value searched with the window (alpha, beta).
+     */
+    private static int boundOf(int value, int alpha, int beta) {
+        if (value <= alpha) {
+            return TranspositionTable.UPPER_BOUND;
+        }
+        if (value >= beta) {
+            return TranspositionTable.LOWER_BOUND;
+        }
+        return TranspositionTable.EXACT;
+    }
+
+    /**
+     * Forced-win scores count plies from the root. The table stores them counted from the
+     * stored position instead, so they stay correct when the position is reached at another depth.
      */
-    private double evaluateState(CheckersData state) {
-        if (state == null) {
-            return LOSS_SCORE; // If no state is available, assume a loss.
+    private static int scoreToTable(int score, int ply) {
+        if (score > WIN_THRESHOLD) {
+            return score + ply;
+        }
+        if (score < -WIN_THRESHOLD) {
+            return score - ply;
         }
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score > WIN_THRESHOLD) {
+            return score - ply;
+        }
+        if (score < -WIN_THRESHOLD) {
+            return score + ply;
+        }
+        return score;
+    }
 
+    /**
+     * Search order over the legal moves: the transposition table's best move first,
+     * then the others in generation order.
+     * @param n Position in the search order.
+     * @param firstMove Index of the move to search first, or -1.
+     * @param count Number of legal moves.
+     * @return The index of the n-th move to search.
+     */
+    private static int moveAt(int n, int firstMove, int count) {
+        if (firstMove < 0 || firstMove >= count) {
+            return n;
+        }
+        if (n == 0) {
+            return firstMove;
+        }
+        return (n <= firstMove) ? n - 1 : n;
+    }
+
+    private static int opponentOf(int player) {
+        return (player == CheckersData.RED) ? CheckersData.BLACK : CheckersData.RED;
+    }
+
+    /**
+     * Evaluate a quiet position with the evaluator set, or the built-in material count.
+     */
+    private int evaluate(GameBoard state, int player) {
+        if (incrementalEvaluator != null) {
+            return incrementalEvaluator.evaluateCurrent(player);
+        }
+        return (evaluator != null) ? evaluator.evaluate((CheckersData) state, player) : evaluateState(state, player);
+    }
+
+    /**
+     * Evaluate the current state of the game.
+     * @param state The current state of the game.
+     * @param player The side to move.
+     * @return The utility value of the state for the side to move.
+     */
+    private int evaluateState(GameBoard state, int player) {
         int blackScore = 0;
         int redScore = 0;
-        for (int row = 0; row < CheckersData.ROWS; row++) {
-            for (int col = (row % 2); col < CheckersData.COLS; col += 2) {
-                switch (state.pieceAt(row, col)) {
-                    case CheckersData.RED:
-                        redScore += NORMAL_PIECE_VALUE;
-                        break;
-                    case CheckersData.BLACK:
-                        blackScore += NORMAL_PIECE_VALUE;
-                        break;
-                    case CheckersData.RED_KING:
-                        redScore += KING_VALUE;
-                        break;
-                    case CheckersData.BLACK_KING:
-                        blackScore += KING_VALUE;
-                        break;
-                }
+        for (int square = 0; square < geometry.squares; square++) {
+            switch (state.pieceAt(square)) {
+                case CheckersData.RED:
+                    redScore += NORMAL_PIECE_VALUE;
+                    break;
+                case CheckersData.BLACK:
+                    blackScore += NORMAL_PIECE_VALUE;
+                    break;
+                case CheckersData.RED_KING:
+                    redScore += KING_VALUE;
+                    break;
+                case CheckersData.BLACK_KING:
+                    blackScore += KING_VALUE;
+                    break;
             }
         }
-        return calculateUtility(blackScore, redScore);
+        int utility = calculateUtility(blackScore, redScore);
+        return (player == CheckersData.BLACK) ? utility : -utility;
     }
 
     /**
      * Calculate the utility value of the current state.
      * @param blackScore blackScore
      * @param redScore redScore
-     * @return The utility value of the current state.
+     * @return The utility value of the current state for BLACK.
      */
-    private double calculateUtility(int blackScore, int redScore) {
+    private int calculateUtility(int blackScore, int redScore) {
         if (redScore == 0) {
-            return WIN_SCORE; // Black wins
+            return WIN_THRESHOLD; // Black wins
         }
         if (blackScore == 0) {
-            return LOSS_SCORE; // Red wins
+            return -WIN_THRESHOLD; // Red wins
         }
-        return (double) (blackScore - redScore) / (blackScore + redScore);
+        return (blackScore - redScore) * MATERIAL_SCALE / (blackScore + redScore);
     }
 }
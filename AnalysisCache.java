@@ -0,0 +1,182 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A transposition table in a memory-mapped file, so search results outlive the JVM and
+ * can be far larger than the heap. AlphaBetaSearch keeps it behind its own table: it
+ * looks here when its table has nothing deep enough and writes its deeper results back.
+ * One cache may be shared by any number of threads and searches.
+ *
+ * The file is little-endian: a HEADER_SIZE byte header (MAGIC, VERSION, the number of
+ * buckets, a power of two) and the buckets, BUCKET_SIZE bytes each, a bucket per cache
+ * line. A position goes to the bucket picked by the low bits of its Zobrist key (see
+ * CheckersData.hashKey, whose keys are the same in every run) and takes one of its
+ * BUCKET_ENTRIES entries, replacing the same position if it was searched no deeper, or
+ * else the shallowest entry.
+ *
+ * An entry is two longs: the position's key xor the data, and the data, which packs the
+ * score, the depth, the bound and the best move. There are no locks; each long is read and
+ * written atomically, and an entry torn by two threads writing it at once no longer
+ * matches either key, so it reads as empty.
+ *
+ * The scores are those of the evaluator of the searches that wrote them, so a cache file
+ * should only be used with one evaluator.
+ */
+class AnalysisCache implements Closeable {
+    static final int MAGIC = 0x43484143; // "CHAC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int BUCKET_ENTRIES = 4;
+    static final int BUCKET_SIZE = BUCKET_ENTRIES * 16;
+    private static final int SEGMENT_BITS = 30; // Map the file in segments of 1 GiB
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long bucketMask;
+
+    private AnalysisCache(FileChannel channel, long buckets) throws IOException {
+        this.channel = channel;
+        long size = HEADER_SIZE + buckets * BUCKET_SIZE;
+        segments = new MappedByteBuffer[(int) ((size + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(size - start, 1L << SEGMENT_BITS));
+        }
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * Open a cache file, or create one of about the given size. An existing cache keeps
+     * its size. A new file is sparse, so disk space is only taken as entries are written.
+     *
+     * @param bytes the size of the buckets of a new cache, rounded down to a power of two
+     */
+    static AnalysisCache open(Path file, long bytes) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            long buckets;
+            if (channel.size() == 0) {
+                buckets = Long.highestOneBit(Math.max(1, bytes / BUCKET_SIZE));
+                header.putInt(MAGIC).putInt(VERSION).putLong(buckets).clear();
+                channel.write(header, 0);
+            } else {
+                channel.read(header, 0);
+                buckets = header.getLong(8);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || Long.bitCount(buckets) != 1) {
+                    throw new IOException("Not an analysis cache of version " + VERSION);
+                }
+                if (channel.size() > HEADER_SIZE + buckets * BUCKET_SIZE) {
+                    throw new IOException("Analysis cache has the wrong size");
+                }
+            }
+            return new AnalysisCache(channel, buckets);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of positions the cache holds at most
+     */
+    long capacity() {
+        return (bucketMask + 1) * BUCKET_ENTRIES;
+    }
+
+    /**
+     * @param key Zobrist key of the position
+     * @return The stored data of the position, to be taken apart with depth, score, bound
+     * and bestMove, or 0 if it is not stored
+     */
+    long probe(long key) {
+        long bucket = HEADER_SIZE + (key & bucketMask) * BUCKET_SIZE;
+        MappedByteBuffer segment = segments[(int) (bucket >>> SEGMENT_BITS)];
+        int offset = (int) (bucket & ((1L << SEGMENT_BITS) - 1));
+        for (int i = 0; i < BUCKET_ENTRIES; i++, offset += 16) {
+            long data = (long) LONGS.getOpaque(segment, offset + 8);
+            if (data != 0 && ((long) LONGS.getOpaque(segment, offset) ^ data) == key) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    static int score(long data) {
+        return (int) data;
+    }
+
+    static int depth(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    static int bound(long data) {
+        return (int) (data >>> 40) & 0x3;
+    }
+
+    static int bestMove(long data) {
+        return (int) (data >>> 42) & 0xFF;
+    }
+
+    /**
+     * Store a search result.
+     *
+     * @param key      Zobrist key of the position
+     * @param depth    remaining depth the position was searched to
+     * @param score    the score of the position
+     * @param bound    TranspositionTable.EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param bestMove index of the best move in the legal move list
+     */
+    void store(long key, int depth, int score, int bound, int bestMove) {
+        long data = (score & 0xFFFFFFFFL) | (long) (depth & 0xFF) << 32 | (long) (bound & 0x3) << 40 | (long) (bestMove & 0xFF) << 42;
+        long bucket = HEADER_SIZE + (key & bucketMask) * BUCKET_SIZE;
+        MappedByteBuffer segment = segments[(int) (bucket >>> SEGMENT_BITS)];
+        int offset = (int) (bucket & ((1L << SEGMENT_BITS) - 1));
+        int victim = offset;
+        int victimDepth = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_ENTRIES; i++, offset += 16) {
+            long stored = (long) LONGS.getOpaque(segment, offset + 8);
+            if (stored != 0 && ((long) LONGS.getOpaque(segment, offset) ^ stored) == key) {
+                if (depth(stored) > depth) {
+                    return;
+                }
+                victim = offset;
+                break;
+            }
+            int storedDepth = (stored == 0) ? -1 : depth(stored);
+            if (storedDepth < victimDepth) {
+                victim = offset;
+                victimDepth = storedDepth;
+            }
+        }
+        LONGS.setOpaque(segment, victim + 8, data);
+        LONGS.setOpaque(segment, victim, key ^ data);
+    }
+
+    /**
+     * Write the entries to the file, which otherwise happens when the system gets round to it.
+     */
+    void flush() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
@@ -0,0 +1,19 @@
+package edu.iastate.cs472.proj2;
+
+/**
+ * One of the best moves of a position as found by AdversarialSearch.analyze: the move,
+ * its score and the line of play expected after it.
+ */
+class AnalysisLine {
+    final CheckersMove move;
+    final int score;                         // For the side to move, on the scale of SearchListener
+    final int depth;                         // Iteration depth, or the length of the line for MonteCarloTreeSearch
+    final CheckersMove[] principalVariation; // Starts with move
+
+    AnalysisLine(CheckersMove move, int score, int depth, CheckersMove[] principalVariation) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.principalVariation = principalVariation;
+    }
+}
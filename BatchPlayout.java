@@ -0,0 +1,295 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.SplittableRandom;
+
+import static edu.iastate.cs472.proj2.PlayoutKernels.DIRECTIONS;
+import static edu.iastate.cs472.proj2.PlayoutKernels.DOWN_RIGHT;
+
+/**
+ * Plays uniformly random games to the end from many positions at once. Every game is a
+ * lane of four bitboards (men and kings of the side to move and of its opponent) seen
+ * from the side to move; each round, PlayoutKernels finds the pieces that can jump or
+ * step in every lane and advances the random generators of all lanes together, then
+ * every game makes one move and its board is turned around (a 180 degree rotation,
+ * which is reversing the bits) for the other side. Finished games are swapped out of
+ * the active lanes so the kernels always work on a dense range.
+ *
+ * The rules are those of CheckersData: jumps are compulsory, captured pieces leave the
+ * board as they are jumped, a man that reaches the last row is crowned at the end of its
+ * move, and a side without a legal move loses. As in MonteCarloTreeSearch, a game is a
+ * draw after STEPS_TO_DRAW moves without a capture. A multiple jump is chosen one jump at
+ * a time, so long sequences are a little less likely than under PlayoutPolicy.uniform.
+ */
+class BatchPlayout {
+    static final int STEPS_TO_DRAW = 40;
+    private static final int LAST_ROW = 0xF0000000;
+    private static final int ONGOING = -1;
+
+    private final PlayoutKernels kernels;
+    private final int capacity;
+
+    // One lane per game
+    private final int[] men;
+    private final int[] kings;
+    private final int[] enemyMen;
+    private final int[] enemyKings;
+    private final boolean[] blackToMove;
+    private final int[] quietMoves;
+    private final int[] seeds;
+    private final int[] games; // index of the game in the caller's arrays
+    private final int[][] jumps = new int[DIRECTIONS][];
+    private final int[][] steps = new int[DIRECTIONS][];
+
+    /**
+     * @param capacity the largest number of games played at once
+     * @param seed     seed of the random generators, a run is reproducible for a given seed
+     */
+    BatchPlayout(int capacity, long seed) {
+        this(capacity, seed, PlayoutKernels.get());
+    }
+
+    /**
+     * @param capacity the largest number of games played at once
+     * @param seed     seed of the random generators
+     * @param kernels  the kernels to use, e.g. the scalar ones for comparison
+     */
+    BatchPlayout(int capacity, long seed, PlayoutKernels kernels) {
+        this.capacity = capacity;
+        this.kernels = kernels;
+        men = new int[capacity];
+        kings = new int[capacity];
+        enemyMen = new int[capacity];
+        enemyKings = new int[capacity];
+        blackToMove = new boolean[capacity];
+        quietMoves = new int[capacity];
+        seeds = new int[capacity];
+        games = new int[capacity];
+        for (int d = 0; d < DIRECTIONS; d++) {
+            jumps[d] = new int[capacity];
+            steps[d] = new int[capacity];
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < capacity; i++) {
+            do {
+                seeds[i] = random.nextInt();
+            } while (seeds[i] == 0);
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The name of the kernels in use, for diagnostics.
+     */
+    String kernelName() {
+        return kernels.name();
+    }
+
+    /**
+     * Play one random game from each of the given positions.
+     *
+     * @param states  the positions, which are not changed
+     * @param players the side to move in each position, RED or BLACK
+     * @param count   number of positions, at most the capacity
+     * @param results receives BLACK's result of each game: 1, 0.5 or 0
+     */
+    void play(CheckersData[] states, int[] players, int count, double[] results) {
+        if (count > capacity) {
+            throw new IllegalArgumentException("Batch of " + count + " exceeds capacity " + capacity);
+        }
+        for (int i = 0; i < count; i++) {
+            load(i, states[i], players[i]);
+        }
+
+        int active = count;
+        while (active > 0) {
+            kernels.moveMasks(men, kings, enemyMen, enemyKings, active, jumps, steps);
+            kernels.nextRandom(seeds, active);
+            int lane = 0;
+            while (lane < active) {
+                int result = advance(lane);
+                if (result == ONGOING) {
+                    lane++;
+                } else {
+                    results[games[lane]] = result / 2.0;
+                    // Move the last active game into this lane; it still has to move this round
+                    moveLane(--active, lane);
+                }
+            }
+        }
+    }
+
+    private void load(int lane, CheckersData state, int player) {
+        int black = 0;
+        int blackKing = 0;
+        int red = 0;
+        int redKing = 0;
+        for (int square = 0; square < CheckersData.SQUARES; square++) {
+            switch (state.pieceAt(square)) {
+                case CheckersData.BLACK:
+                    black |= 1 << square;
+                    break;
+                case CheckersData.BLACK_KING:
+                    blackKing |= 1 << square;
+                    break;
+                case CheckersData.RED:
+                    red |= 1 << square;
+                    break;
+                case CheckersData.RED_KING:
+                    redKing |= 1 << square;
+                    break;
+                default:
+                    break;
+            }
+        }
+        // BLACK moves down the board already; RED's view is the board turned around
+        if (player == CheckersData.BLACK) {
+            men[lane] = black;
+            kings[lane] = blackKing;
+            enemyMen[lane] = red;
+            enemyKings[lane] = redKing;
+        } else {
+            men[lane] = Integer.reverse(red);
+            kings[lane] = Integer.reverse(redKing);
+            enemyMen[lane] = Integer.reverse(black);
+            enemyKings[lane] = Integer.reverse(blackKing);
+        }
+        blackToMove[lane] = player == CheckersData.BLACK;
+        quietMoves[lane] = STEPS_TO_DRAW;
+        games[lane] = lane;
+    }
+
+    /**
+     * Make one random move in a game and hand the turn to the other side.
+     *
+     * @return ONGOING, or BLACK's result of the finished game times two
+     */
+    private int advance(int lane) {
+        int[][] masks = jumps;
+        int total = moveCount(jumps, lane);
+        boolean jump = total > 0;
+        if (!jump) {
+            masks = steps;
+            total = moveCount(steps, lane);
+        }
+        if (total == 0) {
+            return blackToMove[lane] ? 0 : 2; // The side to move has no legal move and loses
+        }
+
+        int choice = Integer.remainderUnsigned(seeds[lane], total);
+        int direction = 0;
+        while (choice >= Integer.bitCount(masks[direction][lane])) {
+            choice -= Integer.bitCount(masks[direction][lane]);
+            direction++;
+        }
+        int from = nthSquare(masks[direction][lane], choice);
+        boolean king = (kings[lane] & from) != 0;
+        men[lane] &= ~from;
+        kings[lane] &= ~from;
+
+        int to;
+        if (jump) {
+            to = jumpFrom(lane, from, direction, king);
+            quietMoves[lane] = STEPS_TO_DRAW;
+        } else {
+            to = PlayoutKernels.shift(direction, from);
+            quietMoves[lane]--;
+        }
+        if (king || (to & LAST_ROW) != 0) {
+            kings[lane] |= to;
+        } else {
+            men[lane] |= to;
+        }
+        if (quietMoves[lane] == 0) {
+            return 1;
+        }
+
+        int ownMen = men[lane];
+        int ownKings = kings[lane];
+        men[lane] = Integer.reverse(enemyMen[lane]);
+        kings[lane] = Integer.reverse(enemyKings[lane]);
+        enemyMen[lane] = Integer.reverse(ownMen);
+        enemyKings[lane] = Integer.reverse(ownKings);
+        blackToMove[lane] = !blackToMove[lane];
+        return ONGOING;
+    }
+
+    /**
+     * Jump from a square in the given direction and continue with randomly chosen jumps
+     * while the piece can. The piece is lifted off the board while it jumps.
+     *
+     * @return The square the piece ends on
+     */
+    private int jumpFrom(int lane, int from, int direction, boolean king) {
+        int random = seeds[lane];
+        int square = capture(lane, from, direction);
+        while (true) {
+            int enemy = enemyMen[lane] | enemyKings[lane];
+            int empty = ~(men[lane] | kings[lane] | enemy);
+            int options = 0;
+            int lastDirection = king ? DIRECTIONS - 1 : DOWN_RIGHT;
+            for (int d = 0; d <= lastDirection; d++) {
+                if ((PlayoutKernels.shift(d, PlayoutKernels.shift(d, square) & enemy) & empty) != 0) {
+                    options |= 1 << d;
+                }
+            }
+            if (options == 0) {
+                seeds[lane] = random;
+                return square;
+            }
+            random = PlayoutKernels.xorshift(random);
+            int next = nthSquare(options, Integer.remainderUnsigned(random, Integer.bitCount(options)));
+            square = capture(lane, square, Integer.numberOfTrailingZeros(next));
+        }
+    }
+
+    /**
+     * Remove the enemy piece next to the square in the given direction.
+     *
+     * @return The landing square behind it
+     */
+    private int capture(int lane, int square, int direction) {
+        int over = PlayoutKernels.shift(direction, square);
+        enemyMen[lane] &= ~over;
+        enemyKings[lane] &= ~over;
+        return PlayoutKernels.shift(direction, over);
+    }
+
+    private void moveLane(int from, int to) {
+        men[to] = men[from];
+        kings[to] = kings[from];
+        enemyMen[to] = enemyMen[from];
+        enemyKings[to] = enemyKings[from];
+        blackToMove[to] = blackToMove[from];
+        quietMoves[to] = quietMoves[from];
+        games[to] = games[from];
+        for (int d = 0; d < DIRECTIONS; d++) {
+            jumps[d][to] = jumps[d][from];
+            steps[d][to] = steps[d][from];
+        }
+        // Swap the generators, so no lane ends up sharing a sequence with another
+        int seed = seeds[to];
+        seeds[to] = seeds[from];
+        seeds[from] = seed;
+    }
+
+    private static int moveCount(int[][] masks, int lane) {
+        int count = 0;
+        for (int d = 0; d < DIRECTIONS; d++) {
+            count += Integer.bitCount(masks[d][lane]);
+        }
+        return count;
+    }
+
+    /**
+     * @return The n-th (from 0) lowest set bit of the mask.
+     */
+    private static int nthSquare(int mask, int n) {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+        return Integer.lowestOneBit(mask);
+    }
+}
@@ -0,0 +1,98 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.Arrays;
+
+/**
+ * The shape of a square draughts board: which squares can hold a piece, how they are
+ * numbered and which squares lie next to and beyond each other on the diagonals. The
+ * rules of a variant are kept by its GameBoard; the geometry only describes the board.
+ *
+ * Squares are numbered from 0 left to right, top to bottom, over the squares that can
+ * hold a piece. BLACK starts at the top and moves down, RED at the bottom and moves up.
+ * The directions are those of CheckersData.DIRECTIONS: bottom left, bottom right, top
+ * left and top right.
+ */
+final class BoardGeometry {
+    static final int[][] DIRECTIONS = {{1, -1}, {1, 1}, {-1, -1}, {-1, 1}};
+    static final int MAX_SQUARES = 64; // Squares of any board, as many as the packed moves of GameBoard can name
+
+    /**
+     * English checkers: 8x8 with a playable square in the top left corner, 32 squares.
+     */
+    static final BoardGeometry ENGLISH = new BoardGeometry(8, 0);
+
+    /**
+     * International draughts: 10x10 with a playable square in the bottom left corner, 50
+     * squares. Square n is square n + 1 of the PDN numbering.
+     */
+    static final BoardGeometry INTERNATIONAL = new BoardGeometry(10, 1);
+
+    final int size;    // Rows, and columns
+    final int squares;
+    final int[] squareRow;
+    final int[] squareCol;
+    final int[][] squareIndex;  // -1 on squares that cannot hold a piece
+    final int[][] neighbour;    // neighbour[square][direction], -1 off the board
+    final int[][] jumpLanding;  // The square beyond the neighbour, -1 off the board
+    final int[][][] rays;       // rays[square][direction] lists the squares up to the edge, nearest first
+
+    /**
+     * @param size        the number of rows and columns
+     * @param firstSquare the column of the first playable square of the top row, 0 or 1
+     */
+    private BoardGeometry(int size, int firstSquare) {
+        this.size = size;
+        this.squares = size * size / 2;
+        squareRow = new int[squares];
+        squareCol = new int[squares];
+        squareIndex = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                squareIndex[row][col] = -1;
+            }
+        }
+        int square = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = (row + firstSquare) % 2; col < size; col += 2) {
+                squareRow[square] = row;
+                squareCol[square] = col;
+                squareIndex[row][col] = square++;
+            }
+        }
+
+        neighbour = new int[squares][DIRECTIONS.length];
+        jumpLanding = new int[squares][DIRECTIONS.length];
+        rays = new int[squares][DIRECTIONS.length][];
+        for (int s = 0; s < squares; s++) {
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                int[] ray = new int[size];
+                int length = 0;
+                for (int target = squareAt(squareRow[s] + DIRECTIONS[d][0], squareCol[s] + DIRECTIONS[d][1]); target >= 0;
+                     target = squareAt(squareRow[target] + DIRECTIONS[d][0], squareCol[target] + DIRECTIONS[d][1])) {
+                    ray[length++] = target;
+                }
+                rays[s][d] = Arrays.copyOf(ray, length);
+                neighbour[s][d] = (length > 0) ? ray[0] : -1;
+                jumpLanding[s][d] = (length > 1) ? ray[1] : -1;
+            }
+        }
+    }
+
+    /**
+     * @return The square at the given row and column, or -1 if it is off the board or
+     * cannot hold a piece
+     */
+    int squareAt(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
+            return -1;
+        }
+        return squareIndex[row][col];
+    }
+
+    /**
+     * @return The row on which a normal piece of the given player is crowned
+     */
+    int crowningRow(int player) {
+        return (player == CheckersData.RED) ? 0 : size - 1;
+    }
+}
@@ -0,0 +1,112 @@
+package edu.iastate.cs472.proj2;
+
+/**
+ * The symmetry of checkers: turning the board half a turn and swapping the colours of the
+ * pieces gives a position that plays exactly like the first with the other side to move,
+ * since RED's men move up the board just as BLACK's move down it. Playable square n goes
+ * to square 31 - n (row r, column c to row 7 - r, column 7 - c), and RED pieces become
+ * BLACK pieces and back.
+ *
+ * Of a position and its mirror image exactly one has BLACK to move, and that one is the
+ * canonical form. A table keyed by canonical positions (see CheckersData.canonicalKey)
+ * holds a position and its mirror image once, and stores what it knows about them from
+ * the canonical side: a win for BLACK in the canonical form is a win for RED in the
+ * mirror image. The mirror image of the mirror image is the position itself, so the same
+ * methods map canonical positions and moves back.
+ *
+ * The opening position is its own mirror image, so the games of the GUI, where RED moves
+ * first, are the mirror images of PDN games, where BLACK moves first.
+ *
+ * Legal moves are generated in square order, which the half turn reverses, so the n-th
+ * move of a position is not in general the n-th move of its mirror image: a table that
+ * keeps moves by their index has to translate the move itself and look it up in the
+ * other position's list (indexOf).
+ */
+class BoardSymmetry {
+    private static final int[] MIRROR_PIECE = {CheckersData.EMPTY, CheckersData.BLACK, CheckersData.BLACK_KING,
+            CheckersData.RED, CheckersData.RED_KING};
+
+    static int mirrorSquare(int square) {
+        return CheckersData.SQUARES - 1 - square;
+    }
+
+    /**
+     * @return The piece of the other colour, a man for a man and a king for a king
+     */
+    static int mirrorPiece(int piece) {
+        return MIRROR_PIECE[piece];
+    }
+
+    static int mirrorPlayer(int player) {
+        return (player == CheckersData.RED) ? CheckersData.BLACK : CheckersData.RED;
+    }
+
+    /**
+     * @param player the side to move
+     * @return Whether positions with that side to move are canonical
+     */
+    static boolean isCanonical(int player) {
+        return player == CheckersData.BLACK;
+    }
+
+    /**
+     * Write the mirror image of a board into another board, or into itself.
+     */
+    static void mirror(CheckersData state, CheckersData out) {
+        for (int square = 0; square < CheckersData.SQUARES / 2; square++) {
+            int piece = state.pieceAt(square);
+            int opposite = state.pieceAt(mirrorSquare(square));
+            out.setPieceAt(square, mirrorPiece(opposite));
+            out.setPieceAt(mirrorSquare(square), mirrorPiece(piece));
+        }
+    }
+
+    /**
+     * Write the canonical form of a position into a board, which may be the same board.
+     *
+     * @param player the side to move in state
+     * @return The side to move in the canonical form, always BLACK
+     */
+    static int canonicalize(CheckersData state, int player, CheckersData out) {
+        if (isCanonical(player)) {
+            if (out != state) {
+                out.copyFrom(state);
+            }
+            return player;
+        }
+        mirror(state, out);
+        return mirrorPlayer(player);
+    }
+
+    /**
+     * @return The move in the mirror image of the position it is played in
+     */
+    static CheckersMove mirror(CheckersMove move) {
+        CheckersMove mirrored = new CheckersMove();
+        for (int i = 0; i < move.rows.size(); i++) {
+            mirrored.addMove(CheckersData.ROWS - 1 - move.rows.get(i), CheckersData.COLS - 1 - move.cols.get(i));
+        }
+        return mirrored;
+    }
+
+    /**
+     * @param move a move packed by CheckersData.getLegalMoves(int, long[])
+     * @return The packed move in the mirror image of the position it is played in
+     */
+    static long mirror(long move) {
+        long captures = Integer.reverse((int) CheckersData.moveCaptures(move)) & 0xFFFFFFFFL;
+        return CheckersData.packMove(mirrorSquare(CheckersData.moveFrom(move)), mirrorSquare(CheckersData.moveTo(move)), captures);
+    }
+
+    /**
+     * @return The index of a move in a list of legal moves, or -1 if it is not there
+     */
+    static int indexOf(CheckersMove[] moves, CheckersMove move) {
+        for (int i = 0; i < moves.length; i++) {
+            if (moves[i].rows.equals(move.rows) && moves[i].cols.equals(move.cols)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
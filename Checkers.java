@@ -3,6 +3,7 @@ package edu.iastate.cs472.proj2;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 
 import javax.swing.*;
 
@@ -115,105 +116,157 @@ public class Checkers extends JPanel {
     } // end constructor
  
     /**
-     * This panel displays a 160-by-160 checkerboard pattern with
-     * a 2-pixel black border.  It is assumed that the size of the
-     * panel is set to exactly 164-by-164 pixels.  This class does
-     * the work of letting the users play checkers, and it displays
-     * the checkerboard.
+     * A 164-by-164 panel that shows a 160-by-160 checkerboard with a 2-pixel black
+     * border, its pieces, and outlines around some of its squares.  The empty board
+     * is drawn once into an image that every panel shares.  A subclass says what each
+     * square shows between beginUpdate() and endUpdate(); only the squares that look
+     * different from the last update are repainted.  Painting reads the squares of the
+     * last update, never the CheckersData they were taken from, so it cannot race a
+     * search reading or changing that board, and it allocates nothing.
      */
-    public static class PreBoard extends JPanel{
-    	CheckersData preBoard;
-    	CheckersMove moveAI;
-    	//setBackground(Color.BLACK);
-    	//boolean gameInProgress=true;
+    abstract static class BoardPanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+
+        /* Outlines of a square, drawn in this order over its piece. */
+        static final int CYAN = 1 << 3, WHITE = 1 << 4, GREEN = 1 << 5;
+        private static final int PIECE = 0x7;  // The bits of a square that hold its piece
+        private static final int SQUARE_SIZE = 20;
+        private static final BufferedImage BACKGROUND = drawBackground();
+
+        /* shown[row * 8 + col] is the piece and outlines painted on a square, next is
+           filled by the update in progress; endUpdate() swaps them. */
+        private int[] shown = new int[CheckersData.ROWS * CheckersData.COLS];
+        private int[] next = new int[CheckersData.ROWS * CheckersData.COLS];
+        private final Rectangle clip = new Rectangle();
+
+        private static BufferedImage drawBackground() {
+            int size = 4 + CheckersData.COLS * SQUARE_SIZE;
+            BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            Graphics g = image.getGraphics();
+            g.setColor(Color.black);
+            g.drawRect(0, 0, size - 1, size - 1);
+            g.drawRect(1, 1, size - 3, size - 3);
+            for (int row = 0; row < CheckersData.ROWS; row++) {
+                for (int col = 0; col < CheckersData.COLS; col++) {
+                    g.setColor((row % 2 == col % 2) ? Color.LIGHT_GRAY : Color.GRAY);
+                    g.fillRect(2 + col * SQUARE_SIZE, 2 + row * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
+                }
+            }
+            g.dispose();
+            return image;
+        }
+
+        /**
+         * Start describing what the panel shows: the pieces of the given board, without outlines.
+         */
+        void beginUpdate(CheckersData position) {
+            for (int row = 0; row < CheckersData.ROWS; row++) {
+                for (int col = 0; col < CheckersData.COLS; col++) {
+                    next[row * CheckersData.COLS + col] = (row % 2 == col % 2) ? position.pieceAt(row, col) : CheckersData.EMPTY;
+                }
+            }
+        }
+
+        /**
+         * Outline a square in the update in progress with CYAN, WHITE or GREEN.
+         */
+        void highlight(int row, int col, int outline) {
+            next[row * CheckersData.COLS + col] |= outline;
+        }
+
+        /**
+         * Show the update and repaint the squares that changed.
+         */
+        void endUpdate() {
+            for (int i = 0; i < next.length; i++) {
+                if (next[i] != shown[i]) {
+                    repaint(2 + (i % CheckersData.COLS) * SQUARE_SIZE, 2 + (i / CheckersData.COLS) * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
+                }
+            }
+            int[] swap = shown;
+            shown = next;
+            next = swap;
+        }
+
+        /**
+         * Copy the background under the clip, then draw the squares the clip touches.
+         */
+        @Override
+        public void paintComponent(Graphics g) {
+            g.getClipBounds(clip);
+            g.drawImage(BACKGROUND, 0, 0, null);
+            int firstRow = Math.max(0, (clip.y - 2) / SQUARE_SIZE);
+            int lastRow = Math.min(CheckersData.ROWS - 1, (clip.y + clip.height - 3) / SQUARE_SIZE);
+            int firstCol = Math.max(0, (clip.x - 2) / SQUARE_SIZE);
+            int lastCol = Math.min(CheckersData.COLS - 1, (clip.x + clip.width - 3) / SQUARE_SIZE);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    drawSquare(g, row, col, shown[row * CheckersData.COLS + col]);
+                }
+            }
+        }
+
+        private static void drawSquare(Graphics g, int row, int col, int square) {
+            int x = 2 + col * SQUARE_SIZE;
+            int y = 2 + row * SQUARE_SIZE;
+            int piece = square & PIECE;
+            if (piece != CheckersData.EMPTY) {
+                g.setColor((piece == CheckersData.RED || piece == CheckersData.RED_KING) ? Color.RED : Color.BLACK);
+                g.fillOval(x + 2, y + 2, 15, 15);
+                if (piece == CheckersData.RED_KING || piece == CheckersData.BLACK_KING) {
+                    g.setColor(Color.WHITE);
+                    g.drawString("K", x + 5, y + 14);
+                }
+            }
+            if ((square & CYAN) != 0) {
+                drawOutline(g, x, y, Color.cyan);
+            }
+            if ((square & WHITE) != 0) {
+                drawOutline(g, x, y, Color.white);
+            }
+            if ((square & GREEN) != 0) {
+                drawOutline(g, x, y, Color.green);
+            }
+        }
+
+        /* A 2-pixel border just inside a square. */
+        private static void drawOutline(Graphics g, int x, int y, Color color) {
+            g.setColor(color);
+            g.drawRect(x, y, 19, 19);
+            g.drawRect(x + 1, y + 1, 17, 17);
+        }
+    }
+
+    /**
+     * This panel shows the board the agent moved on, with the squares of the
+     * agent's move outlined in green.
+     */
+    public static class PreBoard extends BoardPanel {
     	PreBoard()
     	{
     		premessage = new JLabel("",JLabel.LEFT);
     		premessage.setFont(new  Font("Serif", Font.BOLD, 14));
     		premessage.setForeground(Color.green);
             premessage.setText("Initialization");
-            preBoard = new CheckersData();
-            preBoard.setUpGame();
-            moveAI = new CheckersMove();
-            repaint();
+            beginUpdate(new CheckersData());
+            endUpdate();
     	}
     	public void drawBoard(CheckersData currentBoard, CheckersMove move)
     	{
-    		premessage = new JLabel("",JLabel.LEFT);
-    		premessage.setFont(new  Font("Serif", Font.BOLD, 14));
-    		premessage.setForeground(Color.green);
     		premessage.setText("Agent to Play");
-    		preBoard = copyBoard(currentBoard);
-    		moveAI = move.clone();
-    		repaint();
+    		beginUpdate(currentBoard);
+    		for (int i = 0; i < move.rows.size(); i++)
+    			highlight(move.rows.get(i), move.cols.get(i), GREEN);
+    		endUpdate();
     	}
-    	private CheckersData copyBoard(CheckersData board)
-        {
-            this.preBoard = board;
-            CheckersData new_board = new CheckersData();
-            for(int i=0; i<board.board.length;i++)
-            {
-                for(int j=0;j<8;j++)
-                {
-                    new_board.board[i][j]=board.pieceAt(i, j);
-                }
-            }
-            return new_board;
-        }
-    	
-    	public void paintComponent(Graphics g) {
-            /* Draw a two-pixel black border around the edges of the canvas. */
-            g.setColor(Color.black);
-            g.drawRect(0,0,getSize().width-1,getSize().height-1);
-            g.drawRect(1,1,getSize().width-3,getSize().height-3);
-            /* Draw the squares of the checkerboard and the checkers. */
-            for (int row = 0; row < 8; row++) {
-                for (int col = 0; col < 8; col++) {
-                    if ( row % 2 == col % 2 )
-                        g.setColor(Color.LIGHT_GRAY);
-                    else
-                        g.setColor(Color.GRAY);
-                    g.fillRect(2 + col*20, 2 + row*20, 20, 20);
-                    switch (preBoard.pieceAt(row,col)) {
-                        case CheckersData.RED:
-                            g.setColor(Color.RED);
-                            g.fillOval(4 + col*20, 4 + row*20, 15, 15);
-                            break;
-                        case CheckersData.BLACK:
-                            g.setColor(Color.BLACK);
-                            g.fillOval(4 + col*20, 4 + row*20, 15, 15);
-                            break;
-                        case CheckersData.RED_KING:
-                            g.setColor(Color.RED);
-                            g.fillOval(4 + col*20, 4 + row*20, 15, 15);
-                            g.setColor(Color.WHITE);
-                            g.drawString("K", 7 + col*20, 16 + row*20);
-                            break;
-                        case CheckersData.BLACK_KING:
-                            g.setColor(Color.BLACK);
-                            g.fillOval(4 + col*20, 4 + row*20, 15, 15);
-                            g.setColor(Color.WHITE);
-                            g.drawString("K", 7 + col*20, 16 + row*20);
-                            break;
-                    }
-                }
-            }
-            
-            // paint AI move on the left board
-            if(moveAI.rows.size() > 0)
-            {
-            	g.setColor(Color.green);
-            	for(int i = 0; i < moveAI.rows.size(); i++)
-            	{
-            		g.drawRect(2 + moveAI.cols.get(i) * 20, 2 + moveAI.rows.get(i) * 20, 19, 19);
-                    g.drawRect(3 + moveAI.cols.get(i) * 20, 3 + moveAI.rows.get(i) * 20, 17, 17);
-            	}
-            }
-            
-        }  // end paintComponent()
     }
     
-    private class Board extends JPanel implements ActionListener, MouseListener {
+    /**
+     * This panel displays the checkerboard and does the work of letting
+     * the users play checkers.  It is assumed that the size of the panel
+     * is set to exactly 164-by-164 pixels.
+     */
+    private class Board extends BoardPanel implements ActionListener, MouseListener {
         CheckersData board;  // The data for the checkers board is kept here.
         //    This board is also responsible for generating
         //    lists of legal moves.
@@ -234,8 +287,7 @@ public class Checkers extends JPanel {
          * clicks and for clicks on the buttons.  Create the board and
          * start the first game.
          */
-        CheckersData displayBoard;
-        CheckersData agentBoard;
+        CheckersData agentBoard; // The board the agent last moved on, shown by previous
         
         Board() {
             setBackground(Color.BLACK);
@@ -248,8 +300,6 @@ public class Checkers extends JPanel {
             message.setFont(new  Font("Serif", Font.BOLD, 14));
             message.setForeground(Color.green);
             board = new CheckersData();
-            //Display board
-            displayBoard = new CheckersData();
             agentBoard = new CheckersData();
             //Select the AI players.
             decideAIplayer();
@@ -304,9 +354,6 @@ public class Checkers extends JPanel {
                 return;
             }
             board.setUpGame();   // Set up the pieces.
-            
-            //
-            displayBoard.setUpGame(); // S_R, Set up the pieces.
             agentBoard.setUpGame(); // S_L
             //
             currentPlayer = CheckersData.RED;   // RED moves first.
@@ -319,10 +366,8 @@ public class Checkers extends JPanel {
             newGameButton.setEnabled(false);
             resignButton.setEnabled(true);
             
-            ///
             previous.drawBoard(agentBoard, new CheckersMove());
-            ////
-            repaint();
+            showBoard();
         }
 
 
@@ -355,6 +400,7 @@ public class Checkers extends JPanel {
             gameInProgress = false;
             //Previous state
             premessage.setText("Game is done");
+            showBoard();
         }
 
 
@@ -377,7 +423,7 @@ public class Checkers extends JPanel {
                         message.setText("RED:  Make your move.");
                     else
                         message.setText("BLACK:  Make your move.");
-                    repaint();
+                    showBoard();
                     return;
                 }
             }
@@ -415,7 +461,7 @@ public class Checkers extends JPanel {
          */
         void doMakeMove(CheckersMove move) {	
             board.makeMove(move);
-            agentBoard=copyBoard(board);
+            agentBoard.copyFrom(board);
             
             CheckersMove moveAI = new CheckersMove();
              /* The current player's turn is ended, so change to the other player.
@@ -427,9 +473,7 @@ public class Checkers extends JPanel {
                 legalMoves = board.getLegalMoves(currentPlayer);
                 if (legalMoves == null) {
                     gameOver("BLACK has no moves.  RED wins.");
-                    displayBoard = copyBoard(board);
                     previous.drawBoard(board, moveAI);
-                    repaint();
                     return;
                 } else {
                     message.setText("BLACK:  Now AI's turn.");
@@ -449,11 +493,6 @@ public class Checkers extends JPanel {
                 }
 
                 board.makeMove(moveAI);
-
-                displayBoard = copyBoard(board);
-                //Add time
-                
-                repaint();
                 
                 //timeDelay(1);
                 //previous.drawBoard(board);
@@ -493,102 +532,41 @@ public class Checkers extends JPanel {
             }
 
             /* Make sure the board is redrawn in its new state. */
-            repaint();
+            showBoard();
         }  // end doMakeMove();
         /**
-         * Draw a checkerboard pattern in gray and lightGray.  Draw the
-         * checkers.  If a game is in progress, highlight the legal moves.
+         * Show the checkers of the board.  If a game is in progress, highlight
+         * the legal moves.
          */
-        @Override
-        public void paintComponent(Graphics g) {
-
-            /* Draw a two-pixel black border around the edges of the canvas. */
-
-            g.setColor(Color.black);
-            g.drawRect(0,0,getSize().width-1,getSize().height-1);
-            g.drawRect(1,1,getSize().width-3,getSize().height-3);
-
-            /* Draw the squares of the checkerboard and the checkers. */
-            for (int row = 0; row < 8; row++) {
-                for (int col = 0; col < 8; col++) {
-                    if ( row % 2 == col % 2 )
-                        g.setColor(Color.LIGHT_GRAY);
-                    else
-                        g.setColor(Color.GRAY);
-                    g.fillRect(2 + col*20, 2 + row*20, 20, 20);
-                    switch (displayBoard.pieceAt(row,col)) {
-                        case CheckersData.RED:
-                            g.setColor(Color.RED);
-                            g.fillOval(4 + col*20, 4 + row*20, 15, 15);
-                            break;
-                        case CheckersData.BLACK:
-                            g.setColor(Color.BLACK);
-                            g.fillOval(4 + col*20, 4 + row*20, 15, 15);
-                            break;
-                        case CheckersData.RED_KING:
-                            g.setColor(Color.RED);
-                            g.fillOval(4 + col*20, 4 + row*20, 15, 15);
-                            g.setColor(Color.WHITE);
-                            g.drawString("K", 7 + col*20, 16 + row*20);
-                            break;
-                        case CheckersData.BLACK_KING:
-                            g.setColor(Color.BLACK);
-                            g.fillOval(4 + col*20, 4 + row*20, 15, 15);
-                            g.setColor(Color.WHITE);
-                            g.drawString("K", 7 + col*20, 16 + row*20);
-                            break;
-                    }
-                }
-            }
+        void showBoard() {
+            beginUpdate(board);
 
          /* If a game is in progress, highlight the legal moves.   Note that legalMoves
           is never null while a game is in progress. */
 
             if (gameInProgress) {
                 /* First, draw a 2-pixel cyan border around the pieces that can be moved. */
-                g.setColor(Color.cyan);
                 for (CheckersMove legalMove : legalMoves) {
-                    g.drawRect(2 + legalMove.cols.get(0) * 20, 2 + legalMove.rows.get(0) * 20, 19, 19);
-                    g.drawRect(3 + legalMove.cols.get(0) * 20, 3 + legalMove.rows.get(0) * 20, 17, 17);
+                    highlight(legalMove.rows.get(0), legalMove.cols.get(0), CYAN);
                 }
                /* If a piece is selected for moving (i.e. if selectedRow >= 0), then
                 draw a 2-pixel white border around that piece and draw green borders
                 around each square that that piece can be moved to. */
                 if (selectedRow >= 0) {
-                    g.setColor(Color.white);
-                    g.drawRect(2 + selectedCol*20, 2 + selectedRow*20, 19, 19);
-                    g.drawRect(3 + selectedCol*20, 3 + selectedRow*20, 17, 17);
-                    g.setColor(Color.green);
+                    highlight(selectedRow, selectedCol, WHITE);
                     for (CheckersMove legalMove : legalMoves) {
                         if (legalMove.cols.get(0) == selectedCol && legalMove.rows.get(0) == selectedRow) {
-                            //g.drawRect(2 + legalMove.toCol * 20, 2 + legalMove.toRow * 20, 19, 19);
-                            //g.drawRect(3 + legalMove.toCol * 20, 3 + legalMove.toRow * 20, 17, 17);
                         	for(int i = 1; i < legalMove.rows.size(); i++ )
                         	{
-                        		g.drawRect(2 + legalMove.cols.get(i) * 20, 2 + legalMove.rows.get(i) * 20, 19, 19);
-                                g.drawRect(3 + legalMove.cols.get(i) * 20, 3 + legalMove.rows.get(i) * 20, 17, 17);
+                        		highlight(legalMove.rows.get(i), legalMove.cols.get(i), GREEN);
                         	}
-                        	
                         }
                     }
                 }
             }
-
-        }  // end paintComponent()
-
-        private CheckersData copyBoard(CheckersData board)
-        {
-            this.board = board;
-            CheckersData new_board = new CheckersData();
-            for(int i=0; i<board.board.length;i++)
-            {
-                for(int j=0;j<8;j++)
-                {
-                    new_board.board[i][j]=board.pieceAt(i, j);
-                }
-            }
-            return new_board;
+            endUpdate();
         }
+
         /**
          * Respond to a user click on the board.  If no game is in progress, show
          * an error message.  Otherwise, find the row and column that the user
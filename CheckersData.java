@@ -2,6 +2,7 @@ package edu.iastate.cs472.proj2;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * @author Zeyu Yang
@@ -12,7 +13,7 @@ import java.util.Arrays;
  * while BLACK moves "down" the board (i.e. row number increases).
  * Methods are provided to return lists of available legal moves.
  */
-public class CheckersData {
+public class CheckersData extends GameBoard {
 
     static final int ROWS = 8;
     static final int COLS = 8;
@@ -27,6 +28,78 @@ public class CheckersData {
 
     static final int EMPTY = 0, RED = 1, RED_KING = 2, BLACK = 3, BLACK_KING = 4;
 
+  /*  Lookup tables over the 32 playable squares of BoardGeometry.ENGLISH.  Square
+      i lies on row i / 4, and squares are numbered left to right, top to bottom.
+      The step and jump tables only list targets that lie on the board, so move
+      generation never has to check the edges. */
+
+    static final int SQUARES = 32;
+    static final int[][] DIRECTIONS = {MOVE_BOTTOM_LEFT, MOVE_BOTTOM_RIGHT, MOVE_TOP_LEFT, MOVE_TOP_RIGHT};
+
+    static final int[] SQUARE_ROW = BoardGeometry.ENGLISH.squareRow;
+    static final int[] SQUARE_COL = BoardGeometry.ENGLISH.squareCol;
+    static final int[][] SQUARE_INDEX = BoardGeometry.ENGLISH.squareIndex; // -1 on squares that cannot hold a piece
+
+    // NEIGHBOUR[square][direction] and JUMP_LANDING[square][direction] are -1 when off the board
+    static final int[][] NEIGHBOUR = BoardGeometry.ENGLISH.neighbour;
+    static final int[][] JUMP_LANDING = BoardGeometry.ENGLISH.jumpLanding;
+
+    // STEP_TABLE[piece][square] lists the squares that piece can step to from square,
+    // JUMP_TABLE[piece][square] lists (jumped square, landing square) pairs
+    static final int[][][] STEP_TABLE = new int[5][SQUARES][];
+    static final int[][][] JUMP_TABLE = new int[5][SQUARES][];
+
+    // OPPONENTS[piece][other] is true when other belongs to the opponent of piece
+    static final boolean[][] OPPONENTS = new boolean[5][5];
+
+    static {
+        // BLACK normal pieces move down the board, RED normal pieces move up, kings move both ways
+        int[][] pieceDirections = {{}, {2, 3}, {0, 1, 2, 3}, {0, 1}, {0, 1, 2, 3}};
+        for (int piece = RED; piece <= BLACK_KING; piece++) {
+            for (int s = 0; s < SQUARES; s++) {
+                int[] steps = new int[pieceDirections[piece].length];
+                int[] jumps = new int[2 * pieceDirections[piece].length];
+                int stepCount = 0;
+                int jumpCount = 0;
+                for (int d : pieceDirections[piece]) {
+                    if (NEIGHBOUR[s][d] >= 0) {
+                        steps[stepCount++] = NEIGHBOUR[s][d];
+                    }
+                    if (JUMP_LANDING[s][d] >= 0) {
+                        jumps[jumpCount++] = NEIGHBOUR[s][d];
+                        jumps[jumpCount++] = JUMP_LANDING[s][d];
+                    }
+                }
+                STEP_TABLE[piece][s] = Arrays.copyOf(steps, stepCount);
+                JUMP_TABLE[piece][s] = Arrays.copyOf(jumps, jumpCount);
+            }
+        }
+        STEP_TABLE[EMPTY] = new int[SQUARES][0];
+        JUMP_TABLE[EMPTY] = new int[SQUARES][0];
+
+        for (int piece = RED; piece <= BLACK_KING; piece++) {
+            for (int other = RED; other <= BLACK_KING; other++) {
+                OPPONENTS[piece][other] = (piece <= RED_KING) != (other <= RED_KING);
+            }
+        }
+    }
+
+    /*  Zobrist keys: one random number per piece per square plus one for the
+        side to move.  The seed is fixed so that keys stay the same between runs. */
+
+    private static final long[][] ZOBRIST_PIECE = new long[5][SQUARES];
+    private static final long ZOBRIST_BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x43484B52L);
+        for (int piece = RED; piece <= BLACK_KING; piece++) {
+            for (int s = 0; s < SQUARES; s++) {
+                ZOBRIST_PIECE[piece][s] = random.nextLong();
+            }
+        }
+        ZOBRIST_BLACK_TO_MOVE = random.nextLong();
+    }
+
 
     int[][] board;  // board[r][c] is the contents of row r, column c.
 
@@ -44,7 +117,6 @@ public class CheckersData {
         for (int i = 0; i < ROWS; i++) {
             System.arraycopy(data.board[i], 0, board[i], 0, 8);
         }
-        setUpGame();
     }
 
     public static final String ANSI_RESET = "\u001B[0m";
@@ -129,6 +201,55 @@ public class CheckersData {
         this.board = board;
     }
 
+    @Override
+    BoardGeometry geometry() {
+        return BoardGeometry.ENGLISH;
+    }
+
+    @Override
+    CheckersData copy() {
+        return new CheckersData(this);
+    }
+
+    /**
+     * Overwrite this board with the contents of another one without allocating.
+     */
+    void copyFrom(CheckersData data) {
+        for (int i = 0; i < ROWS; i++) {
+            System.arraycopy(data.board[i], 0, board[i], 0, COLS);
+        }
+    }
+
+    @Override
+    void copyFrom(GameBoard board) {
+        copyFrom((CheckersData) board);
+    }
+
+    @Override
+    long hashKey(int player) {
+        long key = (player == BLACK) ? ZOBRIST_BLACK_TO_MOVE : 0L;
+        for (int square = 0; square < SQUARES; square++) {
+            key ^= ZOBRIST_PIECE[pieceAt(square)][square];
+        }
+        return key;
+    }
+
+    /**
+     * @param player the player to move, RED or BLACK
+     * @return the Zobrist key of the canonical form of this position (see BoardSymmetry),
+     * the same for the position and its mirror image with the other player to move
+     */
+    long canonicalKey(int player) {
+        if (BoardSymmetry.isCanonical(player)) {
+            return hashKey(player);
+        }
+        long key = ZOBRIST_BLACK_TO_MOVE;
+        for (int square = 0; square < SQUARES; square++) {
+            key ^= ZOBRIST_PIECE[BoardSymmetry.mirrorPiece(pieceAt(square))][BoardSymmetry.mirrorSquare(square)];
+        }
+        return key;
+    }
+
     /**
      * Make the specified move.  It is assumed that move
      * is non-null and that the move it represents is legal.
@@ -142,6 +263,23 @@ public class CheckersData {
             makeMove(move.rows.get(i), move.cols.get(i), move.rows.get(i + 1), move.cols.get(i + 1));
     }
 
+    @Override
+    void makeMove(long move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        int piece = pieceAt(from);
+        for (long captures = moveCaptures(move); captures != 0; captures &= captures - 1) {
+            setPieceAt(Long.numberOfTrailingZeros(captures), EMPTY);
+        }
+        setPieceAt(from, EMPTY);
+        if (piece == RED && SQUARE_ROW[to] == 0) {
+            piece = RED_KING;
+        } else if (piece == BLACK && SQUARE_ROW[to] == ROWS - 1) {
+            piece = BLACK_KING;
+        }
+        setPieceAt(to, piece);
+    }
+
     void makeMove(int fromRow, int fromCol, int toRow, int toCol) {
         int row_diff = toRow - fromRow;
         int col_diff = toCol - fromCol;
@@ -177,67 +315,21 @@ public class CheckersData {
             king = BLACK_KING;
         }
 
-        boolean hasJump = false;
-        for (int row = 0; row < board.length; row++) {
-            for (int col = 0; col < board[row].length; col++) {
-                CheckersMove[] actions;
-                if (pieceAt(row, col) == king) { // kings can move in either direction
-                    actions = getLegalJumpsFrom(king, row, col);
-                    // There is a jump
-                    if (actions != null) {
-                        if (!hasJump) {
-                            moves.clear(); //Remove all previous regular moves the first time a jump move is discovered
-                        }
-                        hasJump = true; //Switch to include only jump moves
-                        for (CheckersMove m : actions) {
-                            moves.add(m); // Add every possible jump to our legal moves list
-                        }
-                    }
-                    // No jump actions available
-                    else {
-                        // No jump moves have been discovered yet, proceed with adding regular moves
-                        if (!hasJump) {
-                            // Try all possible directions
-                            CheckersMove[] actions_list = {step(row, col, MOVE_BOTTOM_LEFT), step(row, col, MOVE_BOTTOM_RIGHT), step(row, col, MOVE_TOP_LEFT), step(row, col, MOVE_TOP_RIGHT)};
-
-                            // Add only non-null moves
-                            for (CheckersMove m : actions_list) {
-                                if (m != null) {
-                                    moves.add(m);
-                                }
-                            }
-                        }
-                    }
-                } else if (pieceAt(row, col) == player) { // normal pieces can only move forward
-                    actions = getLegalJumpsFrom(player, row, col);
-                    if (actions != null) {
-                        if (!hasJump) {
-                            moves.clear(); //Remove all previous regular moves the first time a jump move is discovered
-                        }
-                        hasJump = true; //Switch to include only jump moves
-                        for (CheckersMove m : actions) {
-                            moves.add(m); // Add every possible jump to our legal moves list
-                        }
-                    } else {
-                        if (!hasJump) {
-                            CheckersMove[] actions_list = new CheckersMove[2];
-                            // RED normal pieces can only move upwards the board
-                            if (player == RED) {
-                                actions_list[0] = step(row, col, MOVE_TOP_LEFT);
-                                actions_list[1] = step(row, col, MOVE_TOP_RIGHT);
-                            }
-                            // BLACK normal pieces can only move downwards the board
-                            else {
-                                actions_list[0] = step(row, col, MOVE_BOTTOM_LEFT);
-                                actions_list[1] = step(row, col, MOVE_BOTTOM_RIGHT);
-                            }
-
-                            // Add only non-null moves
-                            for (CheckersMove m : actions_list) {
-                                if (m != null) {
-                                    moves.add(m);
-                                }
-                            }
+        // Jumps are forced, so regular moves are only generated when no piece can jump
+        for (int square = 0; square < SQUARES; square++) {
+            int piece = pieceAt(square);
+            if (piece == player || piece == king) {
+                addJumpsFrom(piece, square, moves);
+            }
+        }
+
+        if (moves.isEmpty()) {
+            for (int square = 0; square < SQUARES; square++) {
+                int piece = pieceAt(square);
+                if (piece == player || piece == king) {
+                    for (int target : STEP_TABLE[piece][square]) {
+                        if (pieceAt(target) == EMPTY) {
+                            moves.add(new CheckersMove(SQUARE_ROW[square], SQUARE_COL[square], SQUARE_ROW[target], SQUARE_COL[target]));
                         }
                     }
                 }
@@ -254,86 +346,69 @@ public class CheckersData {
     }
 
     /**
-     * Return the action of moving the piece at the given row and column index in the specified direction
+     * Generate the legal moves like getLegalMoves(int), into a buffer instead of a new array.
+     * Nothing is allocated, so the search engines call this at every node with a buffer
+     * of their own for each ply.
      *
-     * @param row row index
-     * @param col column index
-     * @param dir direction in the form of array of size two. E.g [1, 1] means adding 1 to the row and adding 1 to the column, which means moving the piece to the bottom right
-     * @return the action of moving the piece at the given row and column index in the specified direction
+     * @param player the player to move, RED or BLACK
+     * @param moves  the buffer the packed moves are written to, at least MAX_MOVES long
+     * @return The number of legal moves, 0 if the player cannot move
      */
-    CheckersMove step(int row, int col, int[] dir) {
-        CheckersMove m = null;
-        if (outOfBounds(row + dir[0], col + dir[1])) {
-            if (pieceAt(row + dir[0], col + dir[1]) == EMPTY) { // Check if the place we want to move the piece to is EMPTY or not
-                m = new CheckersMove(row, col, row + dir[0], col + dir[1]);
+    int getLegalMoves(int player, long[] moves) {
+        int king = (player == RED) ? RED_KING : BLACK_KING;
+        int count = 0;
+
+        // Jumps are forced, so regular moves are only generated when no piece can jump
+        for (int square = 0; square < SQUARES; square++) {
+            int piece = pieceAt(square);
+            if (piece == player || piece == king) {
+                setPieceAt(square, EMPTY);
+                count = findJumps(piece, square, square, 0L, moves, count);
+                setPieceAt(square, piece);
             }
         }
-        return m;
-    }
 
-    boolean outOfBounds(int row, int col) {
-        return row >= 0 && row < board.length && col >= 0 && col < board[0].length;
+        if (count == 0) {
+            for (int square = 0; square < SQUARES; square++) {
+                int piece = pieceAt(square);
+                if (piece == player || piece == king) {
+                    for (int target : STEP_TABLE[piece][square]) {
+                        if (pieceAt(target) == EMPTY) {
+                            moves[count++] = packMove(square, target, 0L);
+                        }
+                    }
+                }
+            }
+        }
+        return count;
     }
 
+    /**
+     * Return the contents of the given playable square.
+     *
+     * @param square playable square index, 0 to 31
+     * @return the piece on that square
+     */
+    int pieceAt(int square) {
+        return board[SQUARE_ROW[square]][SQUARE_COL[square]];
+    }
 
+    /**
+     * @param player player RED or BLACK, or one of their kings
+     * @param row    row index
+     * @param col    column index
+     * @return every complete jump sequence the given piece can make from the given square, or null if it cannot jump
+     */
     CheckersMove[] getLegalJumpsFrom(int player, int row, int col) {
-        ArrayList<int[]> legalDirections = new ArrayList<>();
-        int enemy1 = 0;
-        int enemy2 = 0;
-
-        // Store information about the given player's enemies (normal and king enemy pieces) and its legal directions to move
-        if (player == BLACK) {
-            legalDirections.add(MOVE_BOTTOM_LEFT);
-            legalDirections.add(MOVE_BOTTOM_RIGHT);
-            enemy1 = RED;
-            enemy2 = RED_KING;
-        } else if (player == RED) {
-            legalDirections.add(MOVE_TOP_LEFT);
-            legalDirections.add(MOVE_TOP_RIGHT);
-            enemy1 = BLACK;
-            enemy2 = BLACK_KING;
-        } else if (player == BLACK_KING || player == RED_KING) {
-            legalDirections.add(MOVE_BOTTOM_LEFT);
-            legalDirections.add(MOVE_BOTTOM_RIGHT);
-            legalDirections.add(MOVE_TOP_LEFT);
-            legalDirections.add(MOVE_TOP_RIGHT);
-
-            if (player == BLACK_KING) {
-                enemy1 = RED;
-                enemy2 = RED_KING;
-            } else {
-                enemy1 = BLACK;
-                enemy2 = BLACK_KING;
-            }
+        int square = SQUARE_INDEX[row][col];
+        if (square < 0) {
+            return null;
         }
 
         ArrayList<CheckersMove> jumps = new ArrayList<>();
-        CheckersMove move = new CheckersMove(); // Starting point for a jump
-        move.addMove(row, col);
-        jumps.add(move);
-        int[][] current_board = deepCopyBoard();
-
-        // Recursively find each possible jumps for all directions
-        findJumpsRecursive(player, enemy1, enemy2, row, col, MOVE_BOTTOM_LEFT, legalDirections, jumps, move.clone());
-        setBoard(current_board);
-        current_board = deepCopyBoard();
-
-        findJumpsRecursive(player, enemy1, enemy2, row, col, MOVE_BOTTOM_RIGHT, legalDirections, jumps, move.clone());
-        setBoard(current_board);
-        current_board = deepCopyBoard();
-
-        findJumpsRecursive(player, enemy1, enemy2, row, col, MOVE_TOP_LEFT, legalDirections, jumps, move.clone());
-        setBoard(current_board);
-        current_board = deepCopyBoard();
-
-        findJumpsRecursive(player, enemy1, enemy2, row, col, MOVE_TOP_RIGHT, legalDirections, jumps, move.clone());
-        setBoard(current_board);
-
-        if (jumps.size() == 1) {
-            // Contains only the starting point, meaning no jumps can be made
-            if (jumps.get(0).rows.size() == 1) {
-                return null;
-            }
+        addJumpsFrom(player, square, jumps);
+        if (jumps.isEmpty()) {
+            return null;
         }
 
         // Convert into array from array list
@@ -341,144 +416,97 @@ public class CheckersData {
     }
 
     /**
-     * Recursively generate a jump move while checking if the generated jump move already has been generated before.
+     * Add every complete jump sequence the given piece can make from the given square.
+     * The moving piece is lifted off the board while the sequences are searched, and
+     * captured pieces are removed and restored on the way back, so the board is
+     * unchanged when this method returns.
      *
-     * @param player   player RED or BLACK
-     * @param enemy1   first enemy of the given player (either normal or king piece)
-     * @param enemy2   second enemy of the given player (either normal or king piece)
-     * @param row      row index
-     * @param col      column index
-     * @param dir      direction in the form of array of size two
-     * @param legalDir legal list of directions for the given player's piece at the given row and column
-     * @param jumps    the list of possible jump moves so far (database of jump moves)
-     * @param move     the jump move in process of being generated
+     * @param piece  the piece that jumps
+     * @param square playable square index the piece starts from
+     * @param jumps  the list the generated jump moves are added to
      */
-    void findJumpsRecursive(int player, int enemy1, int enemy2, int row, int col, int[] dir, ArrayList<int[]> legalDir, ArrayList<CheckersMove> jumps, CheckersMove move) {
-        // If the given direction is valid
-        if (isLegalDir(dir, legalDir)) {
-
-            // If the direction the piece is jumping to and its diagonal adjacent location are not out of bounds
-            if (outOfBounds(row + dir[0], col + dir[1]) && outOfBounds(row + (2 * dir[0]), col + (2 * dir[1]))) {
-
-                // If there exists an enemy in diagonally adjacent square and the square to jump onto is EMPTY
-                if ((pieceAt(row + dir[0], col + dir[1]) == enemy1 || pieceAt(row + dir[0], col + dir[1]) == enemy2) && pieceAt(row + (2 * dir[0]), col + (2 * dir[1])) == EMPTY) {
-                    int newRow = row + (2 * dir[0]);
-                    int newCol = col + (2 * dir[1]);
-                    makeMove(row, col, newRow, newCol);
-                    int[][] b = deepCopyBoard();
-
-                    // Make a jump and update the piece location
-                    move.addMove(newRow, newCol);
-
-                    // Update the database of possible jump moves based on the jump move that has been executed
-                    updateJump(jumps, move);
+    private void addJumpsFrom(int piece, int square, ArrayList<CheckersMove> jumps) {
+        int row = SQUARE_ROW[square];
+        int col = SQUARE_COL[square];
+        int original = board[row][col];
+        board[row][col] = EMPTY;
 
-                    // Recursively find each possible jumps for all directions at the new location
-                    findJumpsRecursive(player, enemy1, enemy2, newRow, newCol, MOVE_BOTTOM_LEFT, legalDir, jumps, move.clone());
-                    setBoard(b);
-                    b = deepCopyBoard();
+        int[] path = new int[SQUARES];
+        path[0] = square;
+        findJumps(piece, square, path, 1, jumps);
 
-                    findJumpsRecursive(player, enemy1, enemy2, newRow, newCol, MOVE_BOTTOM_RIGHT, legalDir, jumps, move.clone());
-                    setBoard(b);
-                    b = deepCopyBoard();
-
-                    findJumpsRecursive(player, enemy1, enemy2, newRow, newCol, MOVE_TOP_LEFT, legalDir, jumps, move.clone());
-                    setBoard(b);
-                    b = deepCopyBoard();
-
-                    findJumpsRecursive(player, enemy1, enemy2, newRow, newCol, MOVE_TOP_RIGHT, legalDir, jumps, move.clone());
-                    setBoard(b);
-                }
-            }
-        }
+        board[row][col] = original;
     }
 
     /**
-     * @param dir      direction in the form of array of size two
-     * @param legalDir legal list of directions for some player's piece
-     * @return true if the given direction is part of the legal directions in the list
+     * Recursively extend a jump sequence, only adding a move once the sequence cannot be continued.
+     *
+     * @param piece  the piece that jumps
+     * @param square playable square index the piece currently stands on
+     * @param path   squares visited so far by the jumping piece
+     * @param length number of squares in the path
+     * @param jumps  the list of possible jump moves so far (database of jump moves)
      */
-    boolean isLegalDir(int[] dir, ArrayList<int[]> legalDir) {
-        for (int[] d : legalDir) {
-            if (d.equals(dir)) {
-                return true;
+    private void findJumps(int piece, int square, int[] path, int length, ArrayList<CheckersMove> jumps) {
+        boolean extended = false;
+        int[] table = JUMP_TABLE[piece][square];
+
+        // The table holds (jumped square, landing square) pairs that lie on the board
+        for (int i = 0; i < table.length; i += 2) {
+            int over = table[i];
+            int landing = table[i + 1];
+            int captured = pieceAt(over);
+            if (OPPONENTS[piece][captured] && pieceAt(landing) == EMPTY) {
+                setPieceAt(over, EMPTY);
+                path[length] = landing;
+                findJumps(piece, landing, path, length + 1, jumps);
+                setPieceAt(over, captured);
+                extended = true;
             }
         }
-        return false;
+
+        if (!extended && length > 1) {
+            CheckersMove move = new CheckersMove();
+            for (int i = 0; i < length; i++) {
+                move.addMove(SQUARE_ROW[path[i]], SQUARE_COL[path[i]]);
+            }
+            jumps.add(move);
+        }
     }
 
     /**
-     * Update the database of jump moves based on the given generated move
+     * Recursively extend a jump sequence like findJumps above, packing the complete
+     * sequences into a move buffer.
      *
-     * @param jumps the list of possible jump moves so far (database of jump moves)
-     * @param move  the jump move in process of being generated
+     * @param from     playable square index the piece started from
+     * @param captures mask of the squares captured so far
+     * @param count    number of moves in the buffer so far
+     * @return The number of moves in the buffer
      */
-    void updateJump(ArrayList<CheckersMove> jumps, CheckersMove move) {
-        /* Check if given move is a subset of one of the moves in the jumps list.
-         * If yes, the jump move is still in process of generating, and we do not add
-         * it into our database.
-         */
-        if (isSubsetOfJumps(jumps, move)) {
-            return;
+    private int findJumps(int piece, int from, int square, long captures, long[] moves, int count) {
+        boolean extended = false;
+        int[] table = JUMP_TABLE[piece][square];
+
+        for (int i = 0; i < table.length; i += 2) {
+            int over = table[i];
+            int landing = table[i + 1];
+            int captured = pieceAt(over);
+            if (OPPONENTS[piece][captured] && pieceAt(landing) == EMPTY) {
+                setPieceAt(over, EMPTY);
+                count = findJumps(piece, from, landing, captures | 1L << over, moves, count);
+                setPieceAt(over, captured);
+                extended = true;
+            }
         }
 
-        // Compare given move with every single jump move in the database
-        for (int i = 0; i < jumps.size(); i++) {
-            CheckersMove jump = jumps.get(i);
-            boolean similar = true;
-            if (jump.rows.size() <= move.rows.size()) {
-                for (int j = 0; j < jump.rows.size(); j++) {
-                    if (jump.rows.get(j) != move.rows.get(j) || jump.cols.get(j) != move.cols.get(j)) {
-                        // If they differ at the last jumping step, the given jump move is a different jumping path, so we add it to our database
-                        if (j == jump.rows.size() - 1 && jump.rows.size() == move.rows.size() && !isSubsetOfJumps(jumps, move)) {
-                            jumps.add(move);
-                        }
-                        similar = false;
-                        break;
-                    }
-                }
-                if (similar && move.rows.size() > jump.rows.size()) { //Given move is built upon a constructed move in the jumps list
-                    //Remove and update the corresponding move with the given jumping move
-                    jumps.remove(i);
-                    jumps.add(move);
-                    break;
-                }
-            } else {
-                for (int j = 0; j < move.rows.size(); j++) {
-                    if (jump.rows.get(j) != move.rows.get(j) || jump.cols.get(j) != move.cols.get(j)) {
-                        if (j == move.rows.size() - 1 && !isSubsetOfJumps(jumps, move)) {
-                            jumps.add(move);
-                        }
-                        break;
-                    }
-                }
-            }
+        if (!extended && captures != 0) {
+            moves[count++] = packMove(from, square, captures);
         }
+        return count;
     }
 
-    /**
-     * @param jumps the list of possible jump moves so far (database of jump moves)
-     * @param move  the jump move in process of being generated
-     * @return true if the given jump move is a subset of some jump move in the database, else false
-     */
-    boolean isSubsetOfJumps(ArrayList<CheckersMove> jumps, CheckersMove move) {
-        for (int i = 0; i < jumps.size(); i++) {
-            boolean same = true;
-            CheckersMove jump = jumps.get(i);
-            if (jump.rows.size() >= move.rows.size()) {
-                for (int j = 0; j < move.rows.size(); j++) {
-                    if (jump.rows.get(j) != move.rows.get(j) || jump.cols.get(j) != move.cols.get(j)) {
-                        same = false;
-                        break;
-                    }
-                }
-                // if same is still true, all jumping step in the given move matches some part of a move in the database
-                if (same) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    void setPieceAt(int square, int piece) {
+        board[SQUARE_ROW[square]][SQUARE_COL[square]] = piece;
     }
 
     /**
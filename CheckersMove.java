@@ -45,6 +45,35 @@ public class CheckersMove {
     }
 
 
+    /**
+     * @return The playable square index (see CheckersData.SQUARE_INDEX) the move starts from.
+     */
+    int fromSquare() {
+        return fromSquare(BoardGeometry.ENGLISH);
+    }
+
+    /**
+     * @return The playable square index the move ends on.
+     */
+    int toSquare() {
+        return toSquare(BoardGeometry.ENGLISH);
+    }
+
+    /**
+     * @return The square the move starts from on a board of the given geometry.
+     */
+    int fromSquare(BoardGeometry geometry) {
+        return geometry.squareIndex[rows.get(0)][cols.get(0)];
+    }
+
+    /**
+     * @return The square the move ends on on a board of the given geometry.
+     */
+    int toSquare(BoardGeometry geometry) {
+        int last = rows.size() - 1;
+        return geometry.squareIndex[rows.get(last)][cols.get(last)];
+    }
+
     void addMove(int r, int c) {
         // add another move (continuous jump), which goes from
         // (last ele in rows, last ele in cols) to (r, c)
@@ -0,0 +1,170 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves many TextEngine sessions at once, one per connection, on a loopback port.
+ *
+ * Usage: java edu.iastate.cs472.proj2.EngineServer [--port N] [--threads N] [--move-budget MS]
+ *            [--cache FILE [--cache-size MB]] [--move-cache POSITIONS]
+ *
+ * Without a port it serves a single session on standard input and output. Sessions
+ * mostly wait on their sockets, so each has a thread of its own, a virtual thread where
+ * the JDK has them (Java 21) and a platform thread otherwise. Searches are CPU-bound and
+ * run on a fixed pool of search threads, by default one per processor. The pool takes
+ * searches first come, first served, and a session has at most one search in flight, so
+ * a busy pool serves sessions in turn; the move budget caps how long any one search may
+ * hold a thread, counted from its go command, so a queued search uses up its budget while
+ * it waits rather than delaying the sessions behind it.
+ *
+ * Each search thread keeps its own engines (see TextEngine), so a transposition table is
+ * shared by every session whose searches run on that thread, and the static tables of
+ * the move generator and evaluators by all of them. With --cache every alpha-beta search
+ * also keeps its results in an AnalysisCache file, 1024 MB unless given, which survives
+ * the server and is read by any later server given the same file. With --move-cache the
+ * searches of every thread share a MoveCache of that many positions, whose hit rate
+ * so far is reported after each search.
+ */
+public class EngineServer {
+    private final ExecutorService searches;
+    private final ExecutorService sessions = sessionExecutor();
+    private final long moveBudget;
+    private final AnalysisCache analysisCache;
+    private final MoveCache moveCache;
+    private final AtomicInteger sessionCount = new AtomicInteger();
+
+    /**
+     * @param threads       search threads
+     * @param moveBudget    the most milliseconds a search may take, or 0 for no limit
+     * @param analysisCache the cache of alpha-beta results, or null
+     * @param moveCache     the cache of legal moves, or null
+     */
+    EngineServer(int threads, long moveBudget, AnalysisCache analysisCache, MoveCache moveCache) {
+        AtomicInteger count = new AtomicInteger();
+        this.searches = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "search-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.moveBudget = moveBudget;
+        this.analysisCache = analysisCache;
+        this.moveCache = moveCache;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long moveBudget = 0;
+        Path cacheFile = null;
+        long cacheSize = 1024;
+        int moveCacheSize = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--move-budget":
+                    moveBudget = Long.parseLong(args[++i]);
+                    break;
+                case "--cache":
+                    cacheFile = Paths.get(args[++i]);
+                    break;
+                case "--cache-size":
+                    cacheSize = Long.parseLong(args[++i]);
+                    break;
+                case "--move-cache":
+                    moveCacheSize = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Usage: EngineServer [--port N] [--threads N] [--move-budget MS] [--cache FILE [--cache-size MB]]"
+                            + " [--move-cache POSITIONS]");
+                    return;
+            }
+        }
+
+        try (AnalysisCache cache = (cacheFile != null) ? AnalysisCache.open(cacheFile, cacheSize << 20) : null) {
+            MoveCache moveCache = (moveCacheSize > 0) ? new MoveCache(moveCacheSize) : null;
+            EngineServer server = new EngineServer(threads, moveBudget, cache, moveCache);
+            if (port < 0) {
+                server.newSession(System.out).run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+                return;
+            }
+            try (ServerSocket socket = server.listen(port)) {
+                System.err.println("Listening on port " + socket.getLocalPort() + " with " + threads + " search threads");
+                server.serve(socket);
+            }
+        }
+    }
+
+    private TextEngine newSession(PrintStream out) {
+        return new TextEngine(out, searches, moveBudget, analysisCache, moveCache);
+    }
+
+    /**
+     * @param port the port, or 0 for any free one
+     */
+    ServerSocket listen(int port) throws IOException {
+        return new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Accept connections until the socket is closed, each a session on a thread of its own.
+     */
+    void serve(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            Socket connection;
+            try {
+                connection = socket.accept();
+            } catch (IOException e) {
+                break; // Closed
+            }
+            sessions.execute(() -> session(connection));
+        }
+    }
+
+    private void session(Socket connection) {
+        int id = sessionCount.incrementAndGet();
+        try (Socket socket = connection) {
+            socket.setTcpNoDelay(true);
+            PrintStream out = new PrintStream(socket.getOutputStream(), false, StandardCharsets.UTF_8);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            newSession(out).runConnection(in);
+        } catch (IOException e) {
+            System.err.println("Session " + id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return An executor with a virtual thread per task, or, before Java 21, a cached pool
+     * of daemon platform threads
+     */
+    private static ExecutorService sessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
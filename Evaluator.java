@@ -0,0 +1,21 @@
+package edu.iastate.cs472.proj2;
+
+/**
+ * A static evaluation of checkers positions for the searches.
+ */
+public interface Evaluator {
+
+    /**
+     * Evaluate a position. Scores must stay within +/-9000, since AlphaBetaSearch takes
+     * anything beyond as a forced win or loss. Otherwise each evaluation has its own
+     * scale: the built-in one of AlphaBetaSearch is the material difference over the
+     * material left times 1000 (a king counting as three men), so one man up from the
+     * opening is about +43 and two men against one +333, while LinearEvaluator adds up
+     * fixed weights, 100 a man by default.
+     *
+     * @param state  the position
+     * @param player the side to move, RED or BLACK
+     * @return the value of the position for the side to move
+     */
+    int evaluate(CheckersData state, int player);
+}
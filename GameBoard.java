@@ -0,0 +1,94 @@
+package edu.iastate.cs472.proj2;
+
+/**
+ * A board of a draughts variant, with its pieces and the rules that move them:
+ * CheckersData for English checkers on 8x8, InternationalBoard for international
+ * draughts on 10x10. The searches only use these methods, so they play either variant.
+ *
+ * Pieces are CheckersData.EMPTY, RED, RED_KING, BLACK and BLACK_KING on every board, RED
+ * being the side that starts at the bottom (PDN's white). Squares are numbered by the
+ * board's geometry.
+ *
+ * The searches take moves packed into longs by getLegalMoves(int, long[]): the square the
+ * piece starts from in bits 0-5, the square it ends on in bits 6-11 and a mask of the
+ * squares of the pieces it captures from bit 12 on. That is all makeMove needs, since a
+ * capturing piece is only crowned where its move ends. Both getLegalMoves return the moves
+ * in the same order, so an index is the same move in both.
+ */
+abstract class GameBoard {
+    static final int MAX_MOVES = 256; // More than the legal moves of any position; the size of a move buffer
+
+    abstract BoardGeometry geometry();
+
+    /**
+     * @return A new board with the same pieces
+     */
+    abstract GameBoard copy();
+
+    /**
+     * Overwrite this board with the contents of another board of the same variant without allocating.
+     */
+    abstract void copyFrom(GameBoard board);
+
+    /**
+     * @param square a square of the board's geometry
+     * @return the piece on that square
+     */
+    abstract int pieceAt(int square);
+
+    abstract int numberOfPieces();
+
+    /**
+     * @param player the player to move, RED or BLACK
+     * @return the Zobrist key of this position with the given player to move
+     */
+    abstract long hashKey(int player);
+
+    /**
+     * @param player the player to move, RED or BLACK
+     * @return the legal moves, or null if the player cannot move
+     */
+    abstract CheckersMove[] getLegalMoves(int player);
+
+    /**
+     * Generate the legal moves into a buffer instead of a new array, allocating nothing.
+     *
+     * @param player the player to move, RED or BLACK
+     * @param moves  the buffer the packed moves are written to, at least MAX_MOVES long
+     * @return The number of legal moves, 0 if the player cannot move
+     */
+    abstract int getLegalMoves(int player, long[] moves);
+
+    /**
+     * Make a legal move returned by getLegalMoves(int).
+     */
+    abstract void makeMove(CheckersMove move);
+
+    /**
+     * Make a legal move packed by getLegalMoves(int, long[]).
+     */
+    abstract void makeMove(long move);
+
+    static int moveFrom(long move) {
+        return (int) move & 0x3F;
+    }
+
+    static int moveTo(long move) {
+        return (int) (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return A mask with bit i set if the move captures the piece on square i
+     */
+    static long moveCaptures(long move) {
+        return move >>> 12;
+    }
+
+    static boolean isJump(long move) {
+        return moveCaptures(move) != 0;
+    }
+
+    static long packMove(int from, int to, long captures) {
+        return from | (long) to << 6 | captures << 12;
+    }
+}
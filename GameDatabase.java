@@ -0,0 +1,434 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * An index of the positions of a PDN game collection: for every position (board and side
+ * to move, by its Zobrist key) the byte offsets of the games that reached it and how those
+ * games ended. The index is memory-mapped, so a query reads a few pages of it and never
+ * the collection.
+ *
+ * Positions are indexed by their canonical form (see BoardSymmetry), so a position and
+ * its mirror image with the other side to move are one entry, and a position of a game
+ * played from the GUI, where RED moves first, finds the PDN games that reached its mirror
+ * image. A query answers for the position asked about, but the games it lists may have
+ * reached the position with the colours reversed.
+ *
+ * Usage: java edu.iastate.cs472.proj2.GameDatabase build games.pdn games.idx
+ *        java edu.iastate.cs472.proj2.GameDatabase query games.pdn games.idx FEN [games]
+ *
+ * Building streams the collection once, replays every game through CheckersData.makeMove
+ * and collects (key, game) pairs in sorted runs of RUN_SIZE pairs on disk, which are then
+ * merged into the index. A game is listed once per position however often it repeats it;
+ * a game with a move that cannot be replayed is indexed up to that move.
+ *
+ * The index file is big-endian: a HEADER_SIZE byte header (MAGIC, VERSION, the number of
+ * positions and of postings), the positions sorted by key as unsigned numbers, ENTRY_SIZE
+ * bytes each (canonical key, index of the first posting, games, and BLACK wins, draws and
+ * BLACK losses in the canonical form), and then the postings, the game offsets of every
+ * position in file order.
+ */
+class GameDatabase implements Closeable {
+    static final int MAGIC = 0x43484458; // "CHDX"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int ENTRY_SIZE = 32;
+    private static final int POSTING_SIZE = 8;
+    private static final int RUN_SIZE = 1 << 22;
+    private static final int SEGMENT_BITS = 30; // Map the file in segments of 1 GiB
+
+    // The low two bits of a posting while building: the result of the game in the position's canonical form
+    private static final int UNKNOWN = 0;
+    private static final int BLACK_LOSS = 1;
+    private static final int DRAW = 2;
+    private static final int BLACK_WIN = 3;
+
+    /**
+     * The games that reached a position and how they ended.
+     */
+    static class Entry {
+        final long firstPosting;
+        final int games;
+        final int blackWins;
+        final int draws;
+        final int blackLosses;
+
+        Entry(long firstPosting, int games, int blackWins, int draws, int blackLosses) {
+            this.firstPosting = firstPosting;
+            this.games = games;
+            this.blackWins = blackWins;
+            this.draws = draws;
+            this.blackLosses = blackLosses;
+        }
+
+        /**
+         * @return BLACK's mean score over the games with a known result, or NaN
+         */
+        double blackScore() {
+            int known = blackWins + draws + blackLosses;
+            return (known == 0) ? Double.NaN : (blackWins + 0.5 * draws) / known;
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long positionCount;
+    private final long postingsStart;
+
+    private GameDatabase(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        segments = new MappedByteBuffer[(int) ((size + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << SEGMENT_BITS));
+        }
+        if (size < HEADER_SIZE || getInt(0) != MAGIC || getInt(4) != VERSION) {
+            throw new IOException("Not a game index of version " + VERSION);
+        }
+        positionCount = getLong(8);
+        postingsStart = HEADER_SIZE + positionCount * ENTRY_SIZE;
+        if (postingsStart + getLong(16) * POSTING_SIZE != size) {
+            throw new IOException("Truncated game index");
+        }
+    }
+
+    static GameDatabase open(Path index) throws IOException {
+        return new GameDatabase(FileChannel.open(index, StandardOpenOption.READ));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("build")) {
+            long start = System.nanoTime();
+            build(Paths.get(args[1]), Paths.get(args[2]));
+            System.out.printf("done in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+        } else if (args.length >= 4 && args[0].equals("query")) {
+            int limit = (args.length > 4) ? Integer.parseInt(args[4]) : 10;
+            CheckersData state = new CheckersData();
+            int player = PositionFormat.fromFen(args[3], state);
+            try (GameDatabase database = open(Paths.get(args[2]))) {
+                long start = System.nanoTime();
+                Entry entry = database.find(state, player);
+                long micros = (System.nanoTime() - start) / 1000;
+                if (entry == null) {
+                    System.out.printf("not found (%d us)%n", micros);
+                    return;
+                }
+                System.out.printf("games: %d  BLACK wins: %d  draws: %d  BLACK losses: %d  (%d us)%n",
+                        entry.games, entry.blackWins, entry.draws, entry.blackLosses, micros);
+                for (long offset : database.gameOffsets(entry, limit)) {
+                    PdnGame game = readGame(Paths.get(args[1]), offset);
+                    System.out.printf("%12d  %-8s %s%n", offset, game.result, game.tags.getOrDefault("Event", ""));
+                }
+            }
+        } else {
+            System.err.println("Usage: GameDatabase build games.pdn games.idx");
+            System.err.println("       GameDatabase query games.pdn games.idx FEN [games]");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return The games that reached the position, or null if none did
+     */
+    Entry find(CheckersData state, int player) {
+        long key = state.canonicalKey(player);
+        long low = 0;
+        long high = positionCount - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long at = HEADER_SIZE + middle * ENTRY_SIZE;
+            int order = Long.compareUnsigned(getLong(at), key);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                if (!BoardSymmetry.isCanonical(player)) {
+                    // BLACK in the canonical form is RED here
+                    return new Entry(getLong(at + 8), getInt(at + 16), getInt(at + 28), getInt(at + 24), getInt(at + 20));
+                }
+                return new Entry(getLong(at + 8), getInt(at + 16), getInt(at + 20), getInt(at + 24), getInt(at + 28));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The byte offsets in the collection of up to limit of the entry's games, in file order
+     */
+    long[] gameOffsets(Entry entry, int limit) {
+        long[] offsets = new long[Math.min(entry.games, limit)];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = getLong(postingsStart + (entry.firstPosting + i) * POSTING_SIZE);
+        }
+        return offsets;
+    }
+
+    /**
+     * Read the game at a byte offset of a collection.
+     */
+    static PdnGame readGame(Path pdn, long offset) throws IOException {
+        try (FileChannel file = FileChannel.open(pdn, StandardOpenOption.READ)) {
+            file.position(offset);
+            return new PdnReader(Channels.newInputStream(file)).next();
+        }
+    }
+
+    private long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & ((1L << SEGMENT_BITS) - 1)));
+    }
+
+    private int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & ((1L << SEGMENT_BITS) - 1)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Index the positions of a PDN collection.
+     */
+    static void build(Path pdn, Path index) throws IOException {
+        Path directory = index.toAbsolutePath().getParent();
+        List<Path> runs = new ArrayList<>();
+        long[] keys = new long[RUN_SIZE];
+        long[] postings = new long[RUN_SIZE];
+        int size = 0;
+        long games = 0;
+        long broken = 0;
+
+        try (PdnReader reader = new PdnReader(new BufferedInputStream(Files.newInputStream(pdn), 1 << 16))) {
+            CheckersData state = new CheckersData();
+            Set<Long> seen = new HashSet<>();
+            PdnGame game;
+            while ((game = reader.next()) != null) {
+                games++;
+                long posting = reader.gameOffset() << 2;
+                int result = resultCode(game.blackScore());
+                seen.clear();
+                int player;
+                try {
+                    player = game.startPosition(state);
+                } catch (IllegalArgumentException e) {
+                    broken++;
+                    continue;
+                }
+                for (int ply = 0; ; ply++) {
+                    long key = state.canonicalKey(player);
+                    if (seen.add(key)) {
+                        if (size == RUN_SIZE) {
+                            runs.add(writeRun(directory, keys, postings, size));
+                            size = 0;
+                        }
+                        keys[size] = key;
+                        postings[size++] = posting | (BoardSymmetry.isCanonical(player) ? result : mirrorResult(result));
+                    }
+                    if (ply == game.moves.size()) {
+                        break;
+                    }
+                    CheckersMove move = PositionFormat.parseMove(state, player, game.moves.get(ply));
+                    if (move == null) {
+                        broken++;
+                        break;
+                    }
+                    state.makeMove(move);
+                    player = (player == CheckersData.RED) ? CheckersData.BLACK : CheckersData.RED;
+                }
+            }
+            if (size > 0 || runs.isEmpty()) {
+                runs.add(writeRun(directory, keys, postings, size));
+            }
+        }
+        System.out.printf("games: %d  with unplayable moves: %d  runs: %d%n", games, broken, runs.size());
+
+        try {
+            merge(runs, directory, index);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    private static int resultCode(double blackScore) {
+        if (Double.isNaN(blackScore)) {
+            return UNKNOWN;
+        }
+        return (blackScore == 1.0) ? BLACK_WIN : (blackScore == 0.0) ? BLACK_LOSS : DRAW;
+    }
+
+    /**
+     * @return The result code of the game for the other colour
+     */
+    private static int mirrorResult(int result) {
+        return (result == BLACK_WIN) ? BLACK_LOSS : (result == BLACK_LOSS) ? BLACK_WIN : result;
+    }
+
+    private static Path writeRun(Path directory, long[] keys, long[] postings, int size) throws IOException {
+        radixSort(keys, postings, size);
+        Path run = Files.createTempFile(directory, "run", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(keys[i]);
+                out.writeLong(postings[i]);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Sort by key as unsigned numbers, keeping pairs with equal keys in order (LSD radix
+     * sort, a byte at a time).
+     */
+    private static void radixSort(long[] keys, long[] values, int size) {
+        long[] keyBuffer = new long[size];
+        long[] valueBuffer = new long[size];
+        int[] starts = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(starts, 0);
+            for (int i = 0; i < size; i++) {
+                starts[(int) ((keys[i] >>> shift) & 0xFF) + 1]++;
+            }
+            for (int b = 0; b < 256; b++) {
+                starts[b + 1] += starts[b];
+            }
+            for (int i = 0; i < size; i++) {
+                int to = starts[(int) ((keys[i] >>> shift) & 0xFF)]++;
+                keyBuffer[to] = keys[i];
+                valueBuffer[to] = values[i];
+            }
+            // Eight passes, so the sorted pairs end up back in keys and values
+            long[] swap = keys;
+            keys = keyBuffer;
+            keyBuffer = swap;
+            swap = values;
+            values = valueBuffer;
+            valueBuffer = swap;
+        }
+    }
+
+    /**
+     * A sorted run being merged.
+     */
+    private static class Run {
+        final int order;
+        final DataInputStream in;
+        long key;
+        long posting;
+
+        Run(int order, InputStream in) {
+            this.order = order;
+            this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+                posting = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                in.close();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Merge the runs into the positions and postings of the index. Runs hold games in
+     * file order, so ties are broken by run to keep the postings in file order.
+     */
+    private static void merge(List<Path> runs, Path directory, Path index) throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> {
+            int order = Long.compareUnsigned(a.key, b.key);
+            return (order != 0) ? order : Integer.compare(a.order, b.order);
+        });
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = new Run(i, Files.newInputStream(runs.get(i)));
+            if (run.next()) {
+                queue.add(run);
+            }
+        }
+
+        Path postingsFile = Files.createTempFile(directory, "postings", ".tmp");
+        long positions = 0;
+        long postings = 0;
+        try {
+            try (DataOutputStream entries = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index), 1 << 16));
+                 DataOutputStream offsets = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(postingsFile), 1 << 16))) {
+                entries.write(new byte[HEADER_SIZE]); // Written once the counts are known
+                int[] results = new int[4];
+                long key = 0;
+                long first = 0;
+                while (!queue.isEmpty()) {
+                    Run run = queue.poll();
+                    if (postings > first && run.key != key) {
+                        writeEntry(entries, key, first, postings, results);
+                        positions++;
+                        first = postings;
+                    }
+                    key = run.key;
+                    results[(int) (run.posting & 3)]++;
+                    offsets.writeLong(run.posting >>> 2);
+                    postings++;
+                    if (run.next()) {
+                        queue.add(run);
+                    }
+                }
+                if (postings > first) {
+                    writeEntry(entries, key, first, postings, results);
+                    positions++;
+                }
+            }
+            try (FileChannel out = FileChannel.open(index, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                 FileChannel in = FileChannel.open(postingsFile, StandardOpenOption.READ)) {
+                long done = 0;
+                while (done < in.size()) {
+                    done += in.transferTo(done, in.size() - done, out);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(postingsFile);
+        }
+
+        try (FileChannel out = FileChannel.open(index, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(positions).putLong(postings).flip();
+            out.write(header, 0);
+        }
+        System.out.printf("positions: %d  postings: %d%n", positions, postings);
+    }
+
+    private static void writeEntry(DataOutputStream out, long key, long first, long end, int[] results) throws IOException {
+        out.writeLong(key);
+        out.writeLong(first);
+        out.writeInt((int) (end - first));
+        out.writeInt(results[BLACK_WIN]);
+        out.writeInt(results[DRAW]);
+        out.writeInt(results[BLACK_LOSS]);
+        Arrays.fill(results, 0);
+    }
+}
@@ -0,0 +1,36 @@
+package edu.iastate.cs472.proj2;
+
+/**
+ * An evaluator that keeps state along the current search path, so that a position
+ * can be evaluated from what changed since its parent instead of from scratch.
+ * The search calls reset at the root, update after every move it makes and undo
+ * when it takes the move back; evaluateCurrent then scores the latest position.
+ */
+public interface IncrementalEvaluator extends Evaluator {
+
+    /**
+     * Start a new search path at the given position.
+     */
+    void reset(CheckersData root);
+
+    /**
+     * Move one ply down the search path.
+     *
+     * @param parent the current position
+     * @param child  the position after the move
+     */
+    void update(CheckersData parent, CheckersData child);
+
+    /**
+     * Move one ply back up the search path.
+     */
+    void undo();
+
+    /**
+     * Evaluate the latest position of the search path.
+     *
+     * @param player the side to move, RED or BLACK
+     * @return the value of the position for the side to move
+     */
+    int evaluateCurrent(int player);
+}
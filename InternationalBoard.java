@@ -0,0 +1,383 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.SplittableRandom;
+
+/**
+ * A position of international draughts on the 10x10 board of BoardGeometry.INTERNATIONAL,
+ * held as three 64-bit bitboards over its 50 squares: the RED pieces, the BLACK pieces and
+ * the kings among both. RED is PDN's white, starts on the bottom four rows and moves first.
+ *
+ * The rules differ from English checkers in three ways. Men still step forward only, but
+ * capture backwards as well. Kings fly: they move any distance along a diagonal, and
+ * capture a piece any distance away, landing on any empty square beyond it. And capturing
+ * is not only forced, the capture of the most pieces is: only the sequences that capture
+ * the most pieces are legal. A sequence takes its captured pieces off the board only when
+ * it ends, so until then they block the way and cannot be captured twice. A man is only
+ * crowned if its move ends on the far row, not if it passes over it while capturing.
+ * Sequences that start and end on the same squares and capture the same pieces are one move.
+ */
+class InternationalBoard extends GameBoard {
+    private static final BoardGeometry GEOMETRY = BoardGeometry.INTERNATIONAL;
+    private static final int SQUARES = 50;
+    private static final int[] MAN_DIRECTIONS_RED = {2, 3};   // Top left and top right
+    private static final int[] MAN_DIRECTIONS_BLACK = {0, 1}; // Bottom left and bottom right
+    private static final long RED_START = ((1L << 20) - 1) << 30;
+    private static final long BLACK_START = (1L << 20) - 1;
+
+    /*  Zobrist keys: one random number per piece per square plus one for the
+        side to move.  The seed is fixed so that keys stay the same between runs. */
+
+    private static final long[][] ZOBRIST_PIECE = new long[5][SQUARES];
+    private static final long ZOBRIST_BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x494E544CL);
+        for (int piece = CheckersData.RED; piece <= CheckersData.BLACK_KING; piece++) {
+            for (int s = 0; s < SQUARES; s++) {
+                ZOBRIST_PIECE[piece][s] = random.nextLong();
+            }
+        }
+        ZOBRIST_BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private long red;    // Bit s is set if a RED piece stands on square s
+    private long black;
+    private long kings;  // The pieces of either colour that are kings
+
+    /*  State of the capture search in getLegalMoves: the squares pieces stand on, with the
+        moving piece lifted off its square, the squares of the pieces it may capture, the
+        most pieces captured by a sequence so far, and the squares of the sequence being
+        searched when the moves are wanted as CheckersMoves. */
+
+    private long occupied;
+    private long enemies;
+    private int mostCaptures;
+    private int[] path;
+    private int[][] paths;
+
+    /**
+     * Create the board and set it up for a new game.
+     */
+    InternationalBoard() {
+        red = RED_START;
+        black = BLACK_START;
+    }
+
+    InternationalBoard(InternationalBoard board) {
+        copyFrom(board);
+    }
+
+    @Override
+    BoardGeometry geometry() {
+        return GEOMETRY;
+    }
+
+    @Override
+    InternationalBoard copy() {
+        return new InternationalBoard(this);
+    }
+
+    @Override
+    void copyFrom(GameBoard board) {
+        InternationalBoard other = (InternationalBoard) board;
+        red = other.red;
+        black = other.black;
+        kings = other.kings;
+    }
+
+    @Override
+    int pieceAt(int square) {
+        long bit = 1L << square;
+        if ((red & bit) != 0) {
+            return ((kings & bit) != 0) ? CheckersData.RED_KING : CheckersData.RED;
+        }
+        if ((black & bit) != 0) {
+            return ((kings & bit) != 0) ? CheckersData.BLACK_KING : CheckersData.BLACK;
+        }
+        return CheckersData.EMPTY;
+    }
+
+    /**
+     * Put a piece on a square, or empty it with CheckersData.EMPTY.
+     */
+    void setPieceAt(int square, int piece) {
+        long bit = 1L << square;
+        red &= ~bit;
+        black &= ~bit;
+        kings &= ~bit;
+        if (piece == CheckersData.RED || piece == CheckersData.RED_KING) {
+            red |= bit;
+        } else if (piece == CheckersData.BLACK || piece == CheckersData.BLACK_KING) {
+            black |= bit;
+        }
+        if (piece == CheckersData.RED_KING || piece == CheckersData.BLACK_KING) {
+            kings |= bit;
+        }
+    }
+
+    @Override
+    int numberOfPieces() {
+        return Long.bitCount(red | black);
+    }
+
+    @Override
+    long hashKey(int player) {
+        long key = (player == CheckersData.BLACK) ? ZOBRIST_BLACK_TO_MOVE : 0L;
+        key = addKeys(key, red & ~kings, CheckersData.RED);
+        key = addKeys(key, red & kings, CheckersData.RED_KING);
+        key = addKeys(key, black & ~kings, CheckersData.BLACK);
+        return addKeys(key, black & kings, CheckersData.BLACK_KING);
+    }
+
+    private static long addKeys(long key, long squares, int piece) {
+        for (; squares != 0; squares &= squares - 1) {
+            key ^= ZOBRIST_PIECE[piece][Long.numberOfTrailingZeros(squares)];
+        }
+        return key;
+    }
+
+    @Override
+    CheckersMove[] getLegalMoves(int player) {
+        long[] moves = new long[MAX_MOVES];
+        path = new int[SQUARES];
+        paths = new int[MAX_MOVES][];
+        int count = generateMoves(player, moves);
+        int[][] movePaths = paths;
+        path = null;
+        paths = null;
+        if (count == 0) {
+            return null;
+        }
+
+        CheckersMove[] legalMoves = new CheckersMove[count];
+        for (int i = 0; i < count; i++) {
+            CheckersMove move = new CheckersMove();
+            for (int square : movePaths[i]) {
+                move.addMove(GEOMETRY.squareRow[square], GEOMETRY.squareCol[square]);
+            }
+            legalMoves[i] = move;
+        }
+        return legalMoves;
+    }
+
+    @Override
+    int getLegalMoves(int player, long[] moves) {
+        return generateMoves(player, moves);
+    }
+
+    /**
+     * Generate the legal moves into a buffer, and their paths into paths if it is set.
+     */
+    private int generateMoves(int player, long[] moves) {
+        long own = (player == CheckersData.RED) ? red : black;
+        enemies = (player == CheckersData.RED) ? black : red;
+        mostCaptures = 1;
+        int count = 0;
+
+        // Captures are forced, so regular moves are only generated when no piece can capture
+        for (long pieces = own; pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            occupied = (red | black) & ~(1L << square);
+            if (path != null) {
+                path[0] = square;
+            }
+            if ((kings & 1L << square) != 0) {
+                count = findKingCaptures(square, square, 0L, 1, moves, count);
+            } else {
+                count = findManCaptures(square, square, 0L, 1, moves, count);
+            }
+        }
+        if (count > 0) {
+            return count;
+        }
+
+        long empty = ~(red | black);
+        int[] manDirections = (player == CheckersData.RED) ? MAN_DIRECTIONS_RED : MAN_DIRECTIONS_BLACK;
+        for (long pieces = own; pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            if ((kings & 1L << square) != 0) {
+                for (int[] ray : GEOMETRY.rays[square]) {
+                    for (int target : ray) {
+                        if ((empty & 1L << target) == 0) {
+                            break;
+                        }
+                        count = addStep(square, target, moves, count);
+                    }
+                }
+            } else {
+                for (int d : manDirections) {
+                    int target = GEOMETRY.neighbour[square][d];
+                    if (target >= 0 && (empty & 1L << target) != 0) {
+                        count = addStep(square, target, moves, count);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private int addStep(int from, int to, long[] moves, int count) {
+        if (paths != null) {
+            paths[count] = new int[] {from, to};
+        }
+        moves[count] = packMove(from, to, 0L);
+        return count + 1;
+    }
+
+    /**
+     * Recursively extend the capture sequence of a man, in every direction.
+     *
+     * @param from     the square the man started from
+     * @param square   the square it stands on
+     * @param captures the squares of the pieces captured so far
+     * @param length   the number of squares in the sequence so far
+     * @param count    the number of moves in the buffer so far
+     * @return The number of moves in the buffer
+     */
+    private int findManCaptures(int from, int square, long captures, int length, long[] moves, int count) {
+        boolean extended = false;
+        for (int d = 0; d < BoardGeometry.DIRECTIONS.length; d++) {
+            int over = GEOMETRY.neighbour[square][d];
+            int landing = GEOMETRY.jumpLanding[square][d];
+            if (landing < 0 || !canCapture(over, captures) || (occupied & 1L << landing) != 0) {
+                continue;
+            }
+            if (path != null) {
+                path[length] = landing;
+            }
+            count = findManCaptures(from, landing, captures | 1L << over, length + 1, moves, count);
+            extended = true;
+        }
+        if (!extended && captures != 0) {
+            count = addCapture(from, square, captures, length, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * Recursively extend the capture sequence of a king, which may capture a piece any
+     * distance away along a diagonal and land on any empty square beyond it.
+     */
+    private int findKingCaptures(int from, int square, long captures, int length, long[] moves, int count) {
+        boolean extended = false;
+        for (int[] ray : GEOMETRY.rays[square]) {
+            int i = 0;
+            while (i < ray.length && (occupied & 1L << ray[i]) == 0) {
+                i++;
+            }
+            if (i >= ray.length - 1 || !canCapture(ray[i], captures)) {
+                continue;
+            }
+            long captured = captures | 1L << ray[i];
+            for (int j = i + 1; j < ray.length && (occupied & 1L << ray[j]) == 0; j++) {
+                if (path != null) {
+                    path[length] = ray[j];
+                }
+                count = findKingCaptures(from, ray[j], captured, length + 1, moves, count);
+                extended = true;
+            }
+        }
+        if (!extended && captures != 0) {
+            count = addCapture(from, square, captures, length, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * @return Whether the piece on a square can be captured: it is the opponent's, and
+     * not already captured by the sequence
+     */
+    private boolean canCapture(int square, long captures) {
+        return square >= 0 && (enemies & ~captures & 1L << square) != 0;
+    }
+
+    /**
+     * Add a complete capture sequence to the buffer if it captures at least as many pieces
+     * as the sequences before it, dropping those if it captures more.
+     */
+    private int addCapture(int from, int to, long captures, int length, long[] moves, int count) {
+        int captured = Long.bitCount(captures);
+        if (captured < mostCaptures) {
+            return count;
+        }
+        if (captured > mostCaptures) {
+            mostCaptures = captured;
+            count = 0;
+        }
+        long move = packMove(from, to, captures);
+        for (int i = count - 1; i >= 0 && moveFrom(moves[i]) == from; i--) {
+            if (moves[i] == move) {
+                return count; // The same move by another route
+            }
+        }
+        if (paths != null) {
+            int[] copy = new int[length];
+            System.arraycopy(path, 0, copy, 0, length);
+            paths[count] = copy;
+        }
+        moves[count] = move;
+        return count + 1;
+    }
+
+    /**
+     * Make a legal move returned by getLegalMoves(int). The pieces it captures are those
+     * it passes over, one on each leg.
+     */
+    @Override
+    void makeMove(CheckersMove move) {
+        long opponents = ((red & 1L << move.fromSquare(GEOMETRY)) != 0) ? black : red;
+        long captures = 0;
+        for (int i = 0; i < move.rows.size() - 1; i++) {
+            int rowStep = Integer.signum(move.rows.get(i + 1) - move.rows.get(i));
+            int colStep = Integer.signum(move.cols.get(i + 1) - move.cols.get(i));
+            int row = move.rows.get(i) + rowStep;
+            int col = move.cols.get(i) + colStep;
+            while (row != move.rows.get(i + 1)) {
+                int square = GEOMETRY.squareIndex[row][col];
+                if ((opponents & 1L << square) != 0) {
+                    captures |= 1L << square;
+                }
+                row += rowStep;
+                col += colStep;
+            }
+        }
+        makeMove(packMove(move.fromSquare(GEOMETRY), move.toSquare(GEOMETRY), captures));
+    }
+
+    @Override
+    void makeMove(long move) {
+        long fromBit = 1L << moveFrom(move);
+        int to = moveTo(move);
+        long toBit = 1L << to;
+        long captures = moveCaptures(move);
+        red &= ~captures;
+        black &= ~captures;
+        kings &= ~captures;
+
+        boolean king = (kings & fromBit) != 0;
+        kings &= ~fromBit;
+        if ((red & fromBit) != 0) {
+            red = (red & ~fromBit) | toBit;
+            king |= GEOMETRY.squareRow[to] == GEOMETRY.crowningRow(CheckersData.RED);
+        } else {
+            black = (black & ~fromBit) | toBit;
+            king |= GEOMETRY.squareRow[to] == GEOMETRY.crowningRow(CheckersData.BLACK);
+        }
+        if (king) {
+            kings |= toBit;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < GEOMETRY.size; row++) {
+            for (int col = 0; col < GEOMETRY.size; col++) {
+                int square = GEOMETRY.squareAt(row, col);
+                sb.append((square < 0) ? ' ' : ".rRbB".charAt(pieceAt(square))).append(' ');
+            }
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,173 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * An evaluation that is a weighted sum of position features. Every feature is
+ * counted as BLACK's count minus RED's count, so a weight applies to both sides
+ * alike. The weights can be fitted to game results with TexelTuner.
+ */
+public class LinearEvaluator implements Evaluator {
+    /**
+     * Feature indices.
+     */
+    static final int MEN = 0;         // normal pieces
+    static final int KINGS = 1;       // kings
+    static final int BACK_ROW = 2;    // normal pieces still guarding their own back row
+    static final int CENTER = 3;      // pieces on the eight center squares
+    static final int ADVANCEMENT = 4; // rows advanced by normal pieces
+    static final int EDGE = 5;        // pieces on the left and right edge
+    static final int FEATURE_COUNT = 6;
+
+    static final String[] FEATURE_NAMES = {"men", "kings", "back_row", "center", "advancement", "edge"};
+
+    /**
+     * Material only, a king worth three men as in the default evaluation of AlphaBetaSearch.
+     * That evaluation divides by the material left, this one does not: a man is 100 here
+     * at any stage of the game, and tuning keeps the weights on that scale.
+     */
+    static final int[] DEFAULT_WEIGHTS = {100, 300, 0, 0, 0, 0};
+
+    /**
+     * FEATURE_TABLE[piece][square] holds the features contributed by that piece on that square.
+     */
+    private static final int[][][] FEATURE_TABLE = new int[5][CheckersData.SQUARES][FEATURE_COUNT];
+
+    static {
+        for (int piece = CheckersData.RED; piece <= CheckersData.BLACK_KING; piece++) {
+            for (int square = 0; square < CheckersData.SQUARES; square++) {
+                int[] features = FEATURE_TABLE[piece][square];
+                int sign = (piece == CheckersData.BLACK || piece == CheckersData.BLACK_KING) ? 1 : -1;
+                int row = CheckersData.SQUARE_ROW[square];
+                int col = CheckersData.SQUARE_COL[square];
+
+                if (piece == CheckersData.RED_KING || piece == CheckersData.BLACK_KING) {
+                    features[KINGS] = sign;
+                } else {
+                    features[MEN] = sign;
+                    // BLACK starts at row 0 and moves down, RED starts at the last row and moves up
+                    int advanced = (piece == CheckersData.BLACK) ? row : CheckersData.ROWS - 1 - row;
+                    features[ADVANCEMENT] = sign * advanced;
+                    if (advanced == 0) {
+                        features[BACK_ROW] = sign;
+                    }
+                }
+                if (row >= 3 && row <= 4 && col >= 2 && col <= 5) {
+                    features[CENTER] = sign;
+                }
+                if (col == 0 || col == CheckersData.COLS - 1) {
+                    features[EDGE] = sign;
+                }
+            }
+        }
+    }
+
+    private final int[] weights;
+    private final int[][] squareValues = new int[5][CheckersData.SQUARES]; // For BLACK
+
+    LinearEvaluator() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    LinearEvaluator(int[] weights) {
+        if (weights.length != FEATURE_COUNT) {
+            throw new IllegalArgumentException("Expected " + FEATURE_COUNT + " weights, got " + weights.length);
+        }
+        this.weights = weights.clone();
+        for (int piece = CheckersData.RED; piece <= CheckersData.BLACK_KING; piece++) {
+            for (int square = 0; square < CheckersData.SQUARES; square++) {
+                for (int f = 0; f < FEATURE_COUNT; f++) {
+                    squareValues[piece][square] += weights[f] * FEATURE_TABLE[piece][square][f];
+                }
+            }
+        }
+    }
+
+    int[] getWeights() {
+        return weights.clone();
+    }
+
+    @Override
+    public int evaluate(CheckersData state, int player) {
+        int score = 0;
+        for (int square = 0; square < CheckersData.SQUARES; square++) {
+            score += squareValues[state.pieceAt(square)][square];
+        }
+        return (player == CheckersData.BLACK) ? score : -score;
+    }
+
+    /**
+     * Count the features of a position, BLACK minus RED.
+     *
+     * @param state    the position
+     * @param features receives FEATURE_COUNT values
+     */
+    static void extractFeatures(CheckersData state, int[] features) {
+        Arrays.fill(features, 0, FEATURE_COUNT, 0);
+        for (int square = 0; square < CheckersData.SQUARES; square++) {
+            int[] contribution = FEATURE_TABLE[state.pieceAt(square)][square];
+            for (int f = 0; f < FEATURE_COUNT; f++) {
+                features[f] += contribution[f];
+            }
+        }
+    }
+
+    /**
+     * Evaluate a batch of positions given as packed features, FEATURE_COUNT bytes per
+     * position, with real-valued weights. Scores are for BLACK.
+     *
+     * @param features packed features of the positions
+     * @param weights  FEATURE_COUNT weights
+     * @param from     first position to evaluate
+     * @param to       one past the last position to evaluate
+     * @param scores   receives the score of position i at index i
+     */
+    static void evaluateBatch(byte[] features, double[] weights, int from, int to, double[] scores) {
+        for (int i = from; i < to; i++) {
+            int offset = i * FEATURE_COUNT;
+            double score = 0;
+            for (int f = 0; f < FEATURE_COUNT; f++) {
+                score += weights[f] * features[offset + f];
+            }
+            scores[i] = score;
+        }
+    }
+
+    /**
+     * Read weights written by save: one "name value" pair per line, in any order.
+     * Features missing from the file keep their default weight.
+     */
+    static LinearEvaluator load(Path file) throws IOException {
+        int[] weights = DEFAULT_WEIGHTS.clone();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                int index = Arrays.asList(FEATURE_NAMES).indexOf(parts[0]);
+                if (index < 0 || parts.length != 2) {
+                    throw new IOException("Bad weight line: " + line);
+                }
+                weights[index] = Integer.parseInt(parts[1]);
+            }
+        }
+        return new LinearEvaluator(weights);
+    }
+
+    void save(Path file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            for (int i = 0; i < FEATURE_COUNT; i++) {
+                writer.println(FEATURE_NAMES[i] + " " + weights[i]);
+            }
+        }
+    }
+}
@@ -1,22 +1,44 @@
 package edu.iastate.cs472.proj2;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * @author Zeyu Yang
+ *
+ * A node of the Monte Carlo search tree. The player of a node is the one who made
+ * the move leading to it, and its enemy is the side to move in its state; wins are
+ * counted for the player.
+ *
+ * When transpositions are shared a node can be the child of several nodes, so the
+ * move and the visit count of every edge are kept by the parent. The parent link
+ * then only refers to the node that expanded this one first.
  */
 
 public class MCNode {
+    /**
+     * Proven game values of a node, for its player.
+     */
+    public static final int UNPROVEN = 0, PROVEN_WIN = 1, PROVEN_LOSS = -1;
+
     private int player;
     private int enemy;
     private double wins;
     private double playouts;
+    private double amafWins;     // All-moves-as-first statistics of moveTaken,
+    private double amafPlayouts; // see MonteCarloTreeSearch.setRave
     private CheckersMove moveTaken;
-    private CheckersData state;
+    private GameBoard state;
     private ArrayList<MCNode> children;
+    private ArrayList<CheckersMove> childMoves;
+    private double[] childVisits = new double[4];
     private MCNode parent;
+    private int pathStamp; // Iteration in which the node was last put on the selection path
+    private CheckersMove[] legalMoves;
+    private boolean legalMovesGenerated;
+    private int provenValue = UNPROVEN;
 
-    public MCNode(int player, int enemy, int wins, int playouts, CheckersData state, CheckersMove moveTaken) {
+    public MCNode(int player, int enemy, int wins, int playouts, GameBoard state, CheckersMove moveTaken) {
         this.player = player;
         this.enemy = enemy;
         this.wins = wins;
@@ -24,6 +46,7 @@ public class MCNode {
         this.state = state;
         this.moveTaken = moveTaken;
         this.children = new ArrayList<>();
+        this.childMoves = new ArrayList<>();
         this.parent = null;
     }
 
@@ -43,11 +66,19 @@ public class MCNode {
         return playouts;
     }
 
+    public double getAmafWins() {
+        return amafWins;
+    }
+
+    public double getAmafPlayouts() {
+        return amafPlayouts;
+    }
+
     public CheckersMove getMoveTaken() {
         return moveTaken;
     }
 
-    public CheckersData getState() {
+    public GameBoard getState() {
         return state;
     }
 
@@ -55,20 +86,149 @@ public class MCNode {
         return parent;
     }
 
+    public void setParent(MCNode parent) {
+        this.parent = parent;
+    }
+
     public ArrayList<MCNode> getChildren() {
         return children;
     }
 
+    /**
+     * @return The legal moves of the enemy in this node's state, or null if there are none.
+     * They are generated once and kept, children are expanded in this order.
+     */
+    public CheckersMove[] getLegalMoves() {
+        if (!legalMovesGenerated) {
+            legalMoves = state.getLegalMoves(enemy);
+            legalMovesGenerated = true;
+        }
+        return legalMoves;
+    }
+
+    /**
+     * @return True if every legal move has a child node.
+     */
+    public boolean isFullyExpanded() {
+        CheckersMove[] moves = getLegalMoves();
+        return moves == null || children.size() == moves.length;
+    }
+
+    /**
+     * @return PROVEN_WIN or PROVEN_LOSS if the game value of this node is known for its player, else UNPROVEN.
+     */
+    public int getProvenValue() {
+        return provenValue;
+    }
+
+    public boolean isProven() {
+        return provenValue != UNPROVEN;
+    }
+
+    public void setProvenValue(int provenValue) {
+        this.provenValue = provenValue;
+    }
+
     public void addWin() {
         wins++;
     }
 
+    /**
+     * Add a partial win, e.g. half a win for a draw.
+     */
+    public void addReward(double reward) {
+        wins += reward;
+    }
+
     public void addPlayout() {
         playouts++;
     }
 
-    public void addChild(MCNode child) {
+    /**
+     * Count a playout in which the player made moveTaken at some point after this node's parent.
+     */
+    public void addAmafResult(double reward) {
+        amafWins += reward;
+        amafPlayouts++;
+    }
+
+    /**
+     * Add an edge to a child node.
+     * @param child The child node, which may already be the child of another node
+     * @param move The move from this node's state to the child's
+     */
+    public void addChild(MCNode child, CheckersMove move) {
+        if (child.parent == null) {
+            child.parent = this;
+        }
         children.add(child);
+        childMoves.add(move);
+        if (childVisits.length < children.size()) {
+            childVisits = Arrays.copyOf(childVisits, 2 * childVisits.length);
+        }
+    }
+
+    /**
+     * @return The move of the edge to the i-th child.
+     */
+    public CheckersMove getChildMove(int i) {
+        return childMoves.get(i);
+    }
+
+    /**
+     * @return How often the edge to the i-th child was selected from this node.
+     */
+    public double getChildVisits(int i) {
+        return childVisits[i];
+    }
+
+    public void addChildVisit(int i) {
+        childVisits[i]++;
+    }
+
+    /**
+     * Remove the edges to the unproven children with at most the given number of playouts.
+     * Their moves become untried again, and this node's statistics, which count every
+     * playout through them, stand in for theirs until they are expanded again.
+     * @return The number of edges removed.
+     */
+    public int pruneChildren(double maxPlayouts) {
+        int count = children.size();
+        CheckersMove[] pruned = new CheckersMove[count];
+        int kept = 0;
+        int removed = 0;
+        for (int i = 0; i < count; i++) {
+            MCNode child = children.get(i);
+            if (!child.isProven() && child.getPlayouts() <= maxPlayouts) {
+                pruned[removed++] = childMoves.get(i);
+                continue;
+            }
+            children.set(kept, child);
+            childMoves.set(kept, childMoves.get(i));
+            childVisits[kept] = childVisits[i];
+            kept++;
+        }
+        if (removed == 0) {
+            return 0;
+        }
+        children.subList(kept, count).clear();
+        childMoves.subList(kept, count).clear();
+        Arrays.fill(childVisits, kept, count, 0);
+
+        // The legal moves start with the moves of the children, in the same order
+        for (int i = 0; i < kept; i++) {
+            legalMoves[i] = childMoves.get(i);
+        }
+        System.arraycopy(pruned, 0, legalMoves, kept, removed);
+        return removed;
+    }
+
+    public int getPathStamp() {
+        return pathStamp;
+    }
+
+    public void setPathStamp(int pathStamp) {
+        this.pathStamp = pathStamp;
     }
 
     public boolean hasChildren() {
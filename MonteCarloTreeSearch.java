@@ -1,16 +1,210 @@
 package edu.iastate.cs472.proj2;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Zeyu Yang
  * Monte Carlo Tree Search
+ *
+ * The search plays any GameBoard. Batch playouts and cutoff evaluations only take the
+ * 8x8 board of CheckersData; on other boards the search plays every playout on its own,
+ * and a cutoff evaluation is an error.
  */
 public class MonteCarloTreeSearch extends AdversarialSearch {
     private static final double EXPLORATION_CONSTANT = Math.sqrt(2);
-    private static final int SIMULATION_COUNT = 1000;
+    static final int SIMULATION_COUNT = 1000;
     private static final int STEPS_TO_DRAW = 40;
-    private static final Random random = new Random();
+    // Evaluation that counts as a 73% chance to win: four men at LinearEvaluator's default weights
+    private static final double EVALUATION_SCALE = 400.0;
+    private static final double RAVE_EQUIVALENCE = 500.0; // Playouts at which AMAF and UCT statistics weigh the same
+    private static final int MOVE_KEYS = BoardGeometry.MAX_SQUARES * BoardGeometry.MAX_SQUARES;
+    private static final int TIME_CHECK_INTERVAL = 1024; // Playouts between reports to the time manager
+    private static final int FIRST_REPORT = 1024; // Playouts before the first report to the listener, then at every doubling
+    private static final int PROVEN_SCORE = 10000;
+    private static final double RECLAIM_TARGET = 0.75; // Fraction of the node budget left after reclaiming nodes
+
+    private Random random = new Random();
+    private int playoutLimit = SIMULATION_COUNT;
+    private PlayoutPolicy playoutPolicy = PlayoutPolicy.uniform();
+    private int playoutCutoff = Integer.MAX_VALUE;
+    private Evaluator cutoffEvaluator;
+    private boolean rave;
+    private boolean solver = true;
+    private boolean transpositions;
+    private int nodeBudget = Integer.MAX_VALUE;
+    private boolean reclaim;
+    private int treeSize; // Nodes in the tree of the current search
+
+    /**
+     * With transpositions, every node of the current search keyed by the Zobrist hash of its state
+     * and side to move, so a position reached by different move orders is a single node.
+     */
+    private Map<Long, MCNode> nodes;
+
+    /**
+     * The selection path of the current iteration: path.get(i + 1) is the child reached from
+     * path.get(i) over its edge pathEdges[i]. Backpropagation follows the path rather than
+     * parent links, which are ambiguous once nodes are shared.
+     */
+    private final ArrayList<MCNode> path = new ArrayList<>();
+    private int[] pathEdges = new int[64];
+
+    /**
+     * playedAt[side][from * 64 + to] is the iteration in which that side last made a move
+     * from one square to another, either in the tree below the node being backed up or in
+     * the playout. It holds the all-moves-as-first sets without clearing them per iteration.
+     */
+    private final int[][] playedAt = new int[2][MOVE_KEYS];
+    private int iteration;
+
+    /**
+     * The position and the packed legal moves of the playout being simulated, reused by
+     * every playout.
+     */
+    private GameBoard playoutState = new CheckersData();
+    private final long[] playoutMoves = new long[GameBoard.MAX_MOVES];
+    private BoardGeometry geometry = BoardGeometry.ENGLISH; // The geometry of the board being searched
+
+    /**
+     * With batch playouts, the leaves of a batch with their selection paths, waiting for
+     * their playout results.
+     */
+    private BatchPlayout batchPlayout;
+    private CheckersData[] batchStates;
+    private int[] batchPlayers;
+    private double[] batchResults;
+    private final ArrayList<ArrayList<MCNode>> batchPaths = new ArrayList<>();
+    private int[][] batchEdges;
+
+    /**
+     * Score leaves with the given evaluation instead of random playouts, or go back
+     * to playouts with null. The same as a playout cutoff after 0 plies.
+     */
+    void setLeafEvaluator(Evaluator evaluator) {
+        setPlayoutCutoff((evaluator != null) ? 0 : Integer.MAX_VALUE, evaluator);
+    }
+
+    /**
+     * Seed the random choices of the search, the order in which moves are expanded and the
+     * playouts, so that searches without a deadline are repeatable. Without a seed every
+     * search makes different choices.
+     */
+    void setSeed(long seed) {
+        random = new Random(seed);
+        if (batchPlayout != null) {
+            setBatchPlayouts(batchPlayout.capacity());
+        }
+    }
+
+    /**
+     * Make at most the given number of playouts per move. Searches with a deadline may
+     * use Integer.MAX_VALUE.
+     */
+    void setPlayoutLimit(int playouts) {
+        this.playoutLimit = playouts;
+    }
+
+    /**
+     * Choose the moves of playouts with the given policy.
+     */
+    void setPlayoutPolicy(PlayoutPolicy policy) {
+        this.playoutPolicy = policy;
+    }
+
+    /**
+     * Stop playouts after the given number of plies and score the position reached with
+     * the evaluator instead of playing to the end of the game. Integer.MAX_VALUE (with a
+     * null evaluator) plays every playout to the end.
+     */
+    void setPlayoutCutoff(int plies, Evaluator evaluator) {
+        if (plies != Integer.MAX_VALUE && evaluator == null) {
+            throw new IllegalArgumentException("A playout cutoff needs an evaluator");
+        }
+        this.playoutCutoff = plies;
+        this.cutoffEvaluator = evaluator;
+    }
+
+    /**
+     * Turn the MCTS-Solver on or off (it is on by default). The solver marks positions
+     * without legal moves as proven and propagates proven wins and losses up the tree:
+     * a node is lost for its player once any child is won for the side to move, and won
+     * once every move of the side to move leads to a child that is lost for it. Proven
+     * children are never selected again, and the search stops once the root is proven.
+     */
+    void setSolver(boolean enabled) {
+        this.solver = enabled;
+    }
+
+    /**
+     * Turn sharing of transpositions on or off. When on, the search builds a directed
+     * acyclic graph instead of a tree: positions are looked up by hash when they are
+     * expanded, and a position reached again through another move order reuses the node,
+     * its statistics and its state. Selection then uses the win rate of the shared node
+     * but the visit count of the edge it is reached over for exploration, and positions
+     * that repeat on the selection path end the descent.
+     */
+    void setTranspositions(boolean enabled) {
+        this.transpositions = enabled;
+    }
+
+    /**
+     * Keep at most the given number of nodes, so that the memory of a search is bounded
+     * however long it runs. Once the budget is used up, selection plays out from the leaf
+     * it reaches instead of expanding it. With reclaim, the search then also collapses
+     * the least visited subtrees below the root's children until RECLAIM_TARGET of the
+     * budget is in use: their edges are removed and their moves can be expanded again,
+     * and their parents' statistics, which already count every playout through them,
+     * stand in for them. Proven nodes are kept. Integer.MAX_VALUE lifts the limit.
+     */
+    void setNodeBudget(int nodes, boolean reclaim) {
+        this.nodeBudget = Math.max(1, nodes);
+        this.reclaim = reclaim;
+    }
+
+    /**
+     * @return The number of nodes in the tree of the last search.
+     */
+    int getTreeSize() {
+        return treeSize;
+    }
+
+    /**
+     * Play out up to the given number of leaves together on a BatchPlayout, or every leaf
+     * on its own with 1 (the default). The leaves of a batch are selected one after the
+     * other; until its result comes back, each pending playout counts as a lost playout
+     * on its path (a virtual loss), which steers the following selections to other leaves.
+     * Batches are only used with the uniform playout policy, no playout cutoff and no
+     * RAVE, since the others need the moves of every playout.
+     */
+    void setBatchPlayouts(int size) {
+        if (size <= 1) {
+            batchPlayout = null;
+            return;
+        }
+        batchPlayout = new BatchPlayout(size, random.nextLong());
+        batchStates = new CheckersData[size];
+        batchPlayers = new int[size];
+        batchResults = new double[size];
+        batchEdges = new int[size][pathEdges.length];
+        batchPaths.clear();
+        for (int i = 0; i < size; i++) {
+            batchPaths.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Turn RAVE on or off. With RAVE, backpropagation also credits every child whose move
+     * its player made anywhere later in the iteration (all moves as first), and selection
+     * blends those statistics into the win rate with a weight that decays as the child's
+     * own playouts grow, so young nodes get useful estimates after a few playouts.
+     */
+    void setRave(boolean enabled) {
+        this.rave = enabled;
+    }
 
     /**
      * Make a move using Monte Carlo Tree Search
@@ -18,114 +212,626 @@ public class MonteCarloTreeSearch extends AdversarialSearch {
      * @return The best move found
      */
     public CheckersMove makeMove(CheckersMove[] legalMoves) {
-        MCNode root = new MCNode(CheckersData.RED, CheckersData.BLACK, 0, 0, this.board, null);
+        if (legalMoves == null || legalMoves.length == 0) {
+            return null;
+        }
+        if (legalMoves.length == 1) {
+            return legalMoves[0];
+        }
+
+        MCNode root = search();
+        MCNode best = bestChild(root);
+        return root.getChildMove(root.getChildren().indexOf(best));
+    }
+
+    /**
+     * Search like makeMove and rank the root's children the way makeMove chooses among
+     * them: proven wins first, then by visits, proven losses last. A line's score is that
+     * of the listener's reports, and its moves follow the most visited children. Only
+     * expanded moves are ranked, so a short search may return fewer lines than asked for.
+     */
+    @Override
+    AnalysisLine[] analyze(CheckersMove[] legalMoves, int lines) {
+        if (lines < 1) {
+            throw new IllegalArgumentException("Cannot analyze " + lines + " lines");
+        }
+        if (legalMoves == null || legalMoves.length == 0) {
+            return new AnalysisLine[0];
+        }
+        MCNode root = search();
+        ArrayList<Integer> ranked = new ArrayList<>();
+        for (int i = 0; i < root.getChildren().size(); i++) {
+            ranked.add(i);
+        }
+        ranked.sort((a, b) -> {
+            int order = Integer.compare(choiceRank(root, a), choiceRank(root, b));
+            return (order != 0) ? order : Double.compare(root.getChildVisits(b), root.getChildVisits(a));
+        });
+
+        AnalysisLine[] result = new AnalysisLine[Math.min(lines, ranked.size())];
+        for (int i = 0; i < result.length; i++) {
+            int edge = ranked.get(i);
+            CheckersMove[] line = principalVariation(root, edge);
+            result[i] = new AnalysisLine(root.getChildMove(edge), scoreOf(root.getChildren().get(edge), line.length), line.length, line);
+        }
+        return result;
+    }
+
+    /**
+     * Run the playouts of one search from board.
+     * @return The root of the search tree, with at least one child
+     */
+    private MCNode search() {
+        if (cutoffEvaluator != null && !(board instanceof CheckersData)) {
+            throw new IllegalStateException("The cutoff evaluator only scores 8x8 boards");
+        }
+        if (playoutState.getClass() != board.getClass()) {
+            playoutState = board.copy();
+        }
+        geometry = board.geometry();
+        int opponent = (player == CheckersData.RED) ? CheckersData.BLACK : CheckersData.RED;
+        MCNode root = new MCNode(opponent, player, 0, 0, this.board, null);
+        for (int[] played : playedAt) {
+            Arrays.fill(played, 0);
+        }
+        iteration = 0;
+        treeSize = 1;
+        nodes = transpositions ? new ConcurrentHashMap<>() : null;
+        if (nodes != null) {
+            nodes.put(root.getState().hashKey(root.getEnemy()), root);
+        }
+
+        boolean batches = batchPlayout != null && playoutPolicy.isUniform()
+                && playoutCutoff == Integer.MAX_VALUE && !rave && board instanceof CheckersData;
+        int playouts = 0;
+        int nextReport = FIRST_REPORT;
+        int reported = 0; // Playouts at the last report
+        boolean reclaiming = reclaim;
+        int nextTimeCheck = TIME_CHECK_INTERVAL;
+        // At least one playout, so a search stopped at once still has a move to choose
+        while (playouts < playoutLimit && !root.isProven() && (playouts == 0 || !isStopped())) {
+            if (batches) {
+                playouts += playBatch(root, playoutLimit - playouts);
+            } else {
+                MCNode node = selectLeaf(root);
+                double result = node.isProven() ? provenResult(node) : simulatePlayout(node);
+                backpropagate(result, true);
+                playouts++;
+            }
+            if (reclaiming && treeSize >= nodeBudget) {
+                reclaiming = reclaimNodes(root); // Without anything left to reclaim, only stop expanding
+            }
+            if (listener != null && playouts >= nextReport) {
+                report(root, playouts);
+                reported = playouts;
+                nextReport = 2 * playouts;
+            }
+            if (timeManager != null && playouts >= nextTimeCheck && root.hasChildren()) {
+                nextTimeCheck = playouts + TIME_CHECK_INTERVAL;
+                if (isTimeUp(root, playouts)) {
+                    break;
+                }
+            }
+        }
+        if (listener != null && root.hasChildren() && playouts != reported) {
+            report(root, playouts);
+        }
+
+        nodes = null;
+        return root;
+    }
+
+    /**
+     * Select and expand the leaf of the next iteration
+     * @param root The root node
+     * @return The leaf, with its selection path in path and pathEdges
+     */
+    private MCNode selectLeaf(MCNode root) {
+        iteration++;
+        MCNode node = selectNode(root);
+        if (!node.isProven() && !node.isFullyExpanded() && treeSize < nodeBudget) {
+            node = expandNode(node);
+        }
+        return node;
+    }
+
+    /**
+     * Select up to a batch of leaves, play them out together and back up their results
+     * @param root The root node
+     * @param limit The most playouts to make
+     * @return The number of playouts made, including proven leaves that needed none
+     */
+    private int playBatch(MCNode root, int limit) {
+        int size = Math.min(limit, batchPlayout.capacity());
+        int playouts = 0;
+        int leaves = 0;
+        while (playouts < size && !root.isProven()) {
+            MCNode node = selectLeaf(root);
+            playouts++;
+            if (node.isProven()) {
+                backpropagate(provenResult(node), true);
+                continue;
+            }
+            // Count the playout now and its reward once it is known
+            for (int i = 0; i < path.size(); i++) {
+                path.get(i).addPlayout();
+                if (i < path.size() - 1) {
+                    path.get(i).addChildVisit(pathEdges[i]);
+                }
+            }
+            batchPaths.get(leaves).clear();
+            batchPaths.get(leaves).addAll(path);
+            if (batchEdges[leaves].length < pathEdges.length) {
+                batchEdges[leaves] = new int[pathEdges.length];
+            }
+            System.arraycopy(pathEdges, 0, batchEdges[leaves], 0, path.size() - 1);
+            batchStates[leaves] = (CheckersData) node.getState();
+            batchPlayers[leaves] = node.getEnemy(); // Enemy plays first
+            leaves++;
+        }
+
+        batchPlayout.play(batchStates, batchPlayers, leaves, batchResults);
+        for (int leaf = 0; leaf < leaves; leaf++) {
+            path.clear();
+            path.addAll(batchPaths.get(leaf));
+            System.arraycopy(batchEdges[leaf], 0, pathEdges, 0, path.size() - 1);
+            backpropagate(batchResults[leaf], false);
+            batchStates[leaf] = null;
+        }
+        return playouts;
+    }
 
-        for (int i = 0; i < SIMULATION_COUNT; i++) {
-            MCNode node = selectNode(root);
-            if (!isTerminal(node)) {
-                node = expandNode(node);
+    /**
+     * Tell the time manager the best move and its score.
+     * @return True if the move has used its time, or no other move can overtake the best
+     * one in the time that is left at the rate of playouts so far
+     */
+    private boolean isTimeUp(MCNode root, int playouts) {
+        int best = root.getChildren().indexOf(bestChild(root));
+        timeManager.update(best, scoreOf(root.getChildren().get(best), 0));
+        if (timeManager.isDone(0)) {
+            return true;
+        }
+        double second = 0;
+        for (int i = 0; i < root.getChildren().size(); i++) {
+            if (i != best) {
+                second = Math.max(second, root.getChildVisits(i));
+            }
+        }
+        long elapsed = timeManager.elapsed();
+        double playoutsLeft = (double) playouts * (timeManager.target() - elapsed) / Math.max(elapsed, 1);
+        return root.getChildVisits(best) - second > playoutsLeft;
+    }
+
+    /**
+     * Collapse the least visited subtrees below the root's children until at most
+     * RECLAIM_TARGET of the node budget is in use. In a tree a node has no more playouts
+     * than its parent, so removing every edge to a node with at most a threshold of playouts
+     * takes away exactly the nodes at or below the threshold; it is the playouts of the node
+     * as many places into the ascending order as there are nodes too many. Shared nodes of
+     * a DAG survive as long as any edge leads to them.
+     * @param root The root node
+     * @return False if there was nothing to reclaim
+     */
+    private boolean reclaimNodes(MCNode root) {
+        int target = (int) (nodeBudget * RECLAIM_TARGET);
+        ArrayList<MCNode> reached = reachableNodes(root);
+        double[] playouts = new double[reached.size()];
+        int candidates = 0;
+        for (MCNode node : reached) {
+            if (node != root && !isRootChild(root, node) && !node.isProven()) {
+                playouts[candidates++] = node.getPlayouts();
+            }
+        }
+        int excess = reached.size() - target;
+        if (excess <= 0 || candidates == 0) {
+            return false;
+        }
+        Arrays.sort(playouts, 0, candidates);
+        double threshold = playouts[Math.min(excess, candidates) - 1];
+        for (MCNode node : reached) {
+            if (node != root) {
+                node.pruneChildren(threshold);
+            }
+        }
+
+        // Count what is left, and forget the rest in the transposition map
+        reached = reachableNodes(root);
+        treeSize = reached.size();
+        if (nodes != null) {
+            nodes.clear();
+            for (MCNode node : reached) {
+                nodes.put(node.getState().hashKey(node.getEnemy()), node);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Every node reachable from the root, each once. A node's parent becomes the
+     * first node it is reached from, so no parent link keeps a removed node alive.
+     */
+    private ArrayList<MCNode> reachableNodes(MCNode root) {
+        int stamp = ++iteration;
+        ArrayList<MCNode> reached = new ArrayList<>();
+        root.setPathStamp(stamp);
+        reached.add(root);
+        for (int i = 0; i < reached.size(); i++) {
+            MCNode node = reached.get(i);
+            for (MCNode child : node.getChildren()) {
+                if (child.getPathStamp() != stamp) {
+                    child.setPathStamp(stamp);
+                    child.setParent(node);
+                    reached.add(child);
+                }
+            }
+        }
+        return reached;
+    }
+
+    private static boolean isRootChild(MCNode root, MCNode node) {
+        return node.getParent() == root;
+    }
+
+    /**
+     * Tell the listener the most visited line and the score of its first move, the log-odds
+     * of its win rate on the scale of the cutoff evaluation (a proven win or loss is
+     * +/-PROVEN_SCORE less its distance).
+     */
+    private void report(MCNode root, int playouts) {
+        int edge = root.getChildren().indexOf(bestChild(root));
+        CheckersMove[] line = (root.getChildVisits(edge) > 0) ? principalVariation(root, edge) : new CheckersMove[0];
+        listener.info(line.length, scoreOf(root.getChildren().get(edge), line.length), playouts, line);
+    }
+
+    /**
+     * @return The move of the given edge and the most visited line below it
+     */
+    private CheckersMove[] principalVariation(MCNode root, int edge) {
+        ArrayList<CheckersMove> line = new ArrayList<>();
+        line.add(root.getChildMove(edge));
+        MCNode node = root.getChildren().get(edge);
+        while (node.hasChildren() && line.size() < geometry.squares * 2) {
+            edge = node.getChildren().indexOf(bestChild(node));
+            if (node.getChildVisits(edge) == 0) {
+                break;
+            }
+            line.add(node.getChildMove(edge));
+            node = node.getChildren().get(edge);
+        }
+        return line.toArray(new CheckersMove[0]);
+    }
+
+    /**
+     * @param child A child of the root
+     * @param length The length of its line, the distance to a proven result
+     * @return The child's score for the side to move at the root, its win rate as an
+     *         evaluation on the scale of EVALUATION_SCALE
+     */
+    private static int scoreOf(MCNode child, int length) {
+        if (child.isProven()) {
+            int sign = (child.getProvenValue() == MCNode.PROVEN_WIN) ? 1 : -1;
+            return sign * (PROVEN_SCORE - length);
+        }
+        double winRate = Math.min(Math.max(child.getWins() / Math.max(child.getPlayouts(), 1), 0.001), 0.999);
+        return (int) Math.round(EVALUATION_SCALE * Math.log(winRate / (1 - winRate)));
+    }
+
+    /**
+     * @param node A proven node
+     * @return BLACK's result of the proven game value
+     */
+    private static double provenResult(MCNode node) {
+        boolean playerWins = node.getProvenValue() == MCNode.PROVEN_WIN;
+        return (playerWins == (node.getPlayer() == CheckersData.BLACK)) ? 1.0 : 0.0;
+    }
+
+    /**
+     * The child to play: a proven win if there is one, else the most visited child that is
+     * not a proven loss, else (every move loses) the most visited child
+     * @param root The root node
+     * @return The best child of the root
+     */
+    private MCNode bestChild(MCNode root) {
+        int best = -1;
+        for (int i = 0; i < root.getChildren().size(); i++) {
+            if (root.getChildren().get(i).getProvenValue() == MCNode.PROVEN_WIN) {
+                return root.getChildren().get(i);
             }
-            String result = simulateRandomPlayout(node);
-            backpropagate(node, result);
+            if (best < 0 || isBetterChoice(root, i, best)) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            throw new IllegalStateException();
         }
+        return root.getChildren().get(best);
+    }
 
-        MCNode bestChild = root.getChildren().stream()
-                .max((child1, child2) -> Double.compare(child1.getPlayouts(), child2.getPlayouts()))
-                .orElseThrow(IllegalStateException::new);
+    /**
+     * @return 0 for a proven win of the root's child, 2 for a proven loss, else 1
+     */
+    private static int choiceRank(MCNode root, int child) {
+        int value = root.getChildren().get(child).getProvenValue();
+        return (value == MCNode.PROVEN_WIN) ? 0 : (value == MCNode.PROVEN_LOSS) ? 2 : 1;
+    }
 
-        return bestChild.getMoveTaken();
+    private static boolean isBetterChoice(MCNode root, int child, int best) {
+        boolean childLoses = root.getChildren().get(child).getProvenValue() == MCNode.PROVEN_LOSS;
+        boolean bestLoses = root.getChildren().get(best).getProvenValue() == MCNode.PROVEN_LOSS;
+        if (childLoses != bestLoses) {
+            return bestLoses;
+        }
+        return root.getChildVisits(child) > root.getChildVisits(best);
     }
 
     /**
-     * Select a node to expand
+     * Select a node to expand: descend through fully expanded nodes by UCB value,
+     * recording the selection path
      * @param node The node to select from
      * @return The selected node
      */
     private MCNode selectNode(MCNode node) {
-        while (!node.getChildren().isEmpty()) {
-            node = node.getChildren().stream()
-                    .max((child1, child2) -> Double.compare(ucbValue(child1), ucbValue(child2)))
-                    .orElseThrow(IllegalStateException::new);
+        path.clear();
+        path.add(node);
+        node.setPathStamp(iteration);
+        while (node.isFullyExpanded() && node.hasChildren() && !node.isProven()) {
+            // Children already on the path repeat a position and are left out, so they
+            // cannot win every selection through this node without ever being visited
+            int edge = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < node.getChildren().size(); i++) {
+                if (node.getChildren().get(i).getPathStamp() == iteration) {
+                    continue;
+                }
+                double value = selectionValue(node, i);
+                if (edge < 0 || value > bestValue) {
+                    bestValue = value;
+                    edge = i;
+                }
+            }
+            if (edge < 0) {
+                break; // Every move repeats a position on the path, play out from here
+            }
+            MCNode child = node.getChildren().get(edge);
+            extendPath(edge, child);
+            node = child;
         }
         return node;
     }
 
     /**
-     * Expand a node by adding a child node
+     * Append the child reached over the given edge of the last node to the selection path.
+     */
+    private void extendPath(int edge, MCNode child) {
+        if (path.size() > pathEdges.length) {
+            pathEdges = Arrays.copyOf(pathEdges, 2 * pathEdges.length);
+        }
+        pathEdges[path.size() - 1] = edge;
+        path.add(child);
+        child.setPathStamp(iteration);
+    }
+
+    /**
+     * @param parent The node being selected from
+     * @param edge Index of one of its children
+     * @return The UCB value of the child, or minus infinity for a proven loss the solver excludes
+     */
+    private double selectionValue(MCNode parent, int edge) {
+        if (solver && parent.getChildren().get(edge).getProvenValue() == MCNode.PROVEN_LOSS) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return ucbValue(parent, edge);
+    }
+
+    /**
+     * Expand a node by adding a child node for one of its untried moves
      * @param node The node to expand
      * @return The child node
      */
     private MCNode expandNode(MCNode node) {
-        CheckersMove[] legalMoves = node.getState().getLegalMoves(node.getEnemy());
+        CheckersMove[] legalMoves = node.getLegalMoves();
         if (legalMoves == null) {
             return node; // Node represents a terminal state
         }
-        CheckersMove move = legalMoves[random.nextInt(legalMoves.length)];
-        CheckersData nextState = new CheckersData(node.getState());
+        // Try the untried moves in random order
+        int tried = node.getChildren().size();
+        int pick = tried + random.nextInt(legalMoves.length - tried);
+        CheckersMove move = legalMoves[pick];
+        legalMoves[pick] = legalMoves[tried];
+        legalMoves[tried] = move;
+
+        GameBoard nextState = node.getState().copy();
         nextState.makeMove(move);
-        MCNode childNode = new MCNode(node.getEnemy(), node.getPlayer(), 0, 0, nextState, move);
-        node.addChild(childNode);
+        MCNode childNode;
+        if (nodes != null) {
+            // Side to move in the child is the node's player
+            childNode = nodes.computeIfAbsent(nextState.hashKey(node.getPlayer()), key -> {
+                treeSize++;
+                return new MCNode(node.getEnemy(), node.getPlayer(), 0, 0, nextState, move);
+            });
+        } else {
+            childNode = new MCNode(node.getEnemy(), node.getPlayer(), 0, 0, nextState, move);
+            treeSize++;
+        }
+        node.addChild(childNode, move);
+        if (childNode.getPathStamp() == iteration) {
+            // The move repeats a position on the path, play out from the node itself; the
+            // edge is visited once selection reaches the node without the position on the path
+            return node;
+        }
+        extendPath(tried, childNode);
         return childNode;
     }
 
     /**
-     * Simulate a random playout from a node
+     * Simulate a playout from a node with the playout policy, up to the end of the game,
+     * a draw, or the playout cutoff
      * @param node The node to simulate from
-     * @return The result of the playout
+     * @return BLACK's result of the playout: 1 for a win, 0 for a loss, 0.5 for a draw,
+     * or the expected result if the playout was cut off
      */
-    private String simulateRandomPlayout(MCNode node) {
-        CheckersData state = new CheckersData(node.getState());
+    private double simulatePlayout(MCNode node) {
+        GameBoard state = playoutState;
+        state.copyFrom(node.getState());
         int currentPlayer = node.getEnemy(); // Enemy plays first
         int stepsWithoutCapture = STEPS_TO_DRAW;
+        int pieces = state.numberOfPieces();
+        int plies = 0;
 
-        while (!isTerminal(state, currentPlayer)) {
-            CheckersMove[] legalMoves = state.getLegalMoves(currentPlayer);
-            CheckersMove move = legalMoves[random.nextInt(legalMoves.length)];
+        // Leaves are played out more than once, so the moves at the start may well be cached
+        int count = (moveCache != null)
+                ? moveCache.legalMoves(state, currentPlayer, state.hashKey(currentPlayer), playoutMoves)
+                : state.getLegalMoves(currentPlayer, playoutMoves);
+        while (count > 0) {
+            if (plies++ == playoutCutoff) {
+                return expectedResult(state, currentPlayer);
+            }
+            long move = playoutPolicy.chooseMove(state, currentPlayer, playoutMoves, count, random);
             state.makeMove(move);
+            recordMove(currentPlayer, move);
 
-            if (state.numberOfPieces() == node.getState().numberOfPieces()) {
+            int remaining = state.numberOfPieces();
+            if (remaining == pieces) {
                 if (--stepsWithoutCapture == 0) {
-                    return "DRAW";
+                    return 0.5;
                 }
             } else {
+                pieces = remaining;
                 stepsWithoutCapture = STEPS_TO_DRAW; // Reset the draw counter
             }
 
             currentPlayer = (currentPlayer == CheckersData.RED) ? CheckersData.BLACK : CheckersData.RED;
+            count = state.getLegalMoves(currentPlayer, playoutMoves);
+        }
+
+        // The player to move has no legal move and loses
+        return (currentPlayer == CheckersData.BLACK) ? 0.0 : 1.0;
+    }
+
+    /**
+     * Turn the cutoff evaluation of a position into BLACK's expected result
+     * @param state The position where the playout stopped
+     * @param player The side to move
+     * @return BLACK's expected result, between 0 and 1
+     */
+    private double expectedResult(GameBoard state, int player) {
+        int score = cutoffEvaluator.evaluate((CheckersData) state, player);
+        if (player != CheckersData.BLACK) {
+            score = -score;
         }
+        return 1.0 / (1.0 + Math.exp(-score / EVALUATION_SCALE));
+    }
 
-        return (currentPlayer == node.getPlayer()) ? "LOSE" : "WIN";
+    /**
+     * Backpropagate the result of a playout along the selection path
+     * @param result BLACK's result of the playout
+     * @param countPlayout Whether to count the playout, false if a batch counted it already
+     */
+    private void backpropagate(double result, boolean countPlayout) {
+        boolean proving = solver;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            MCNode node = path.get(i);
+            if (proving) {
+                proving = updateProvenValue(node); // Only a newly proven node can prove its parent
+            }
+            if (countPlayout) {
+                node.addPlayout();
+                if (i < path.size() - 1) {
+                    node.addChildVisit(pathEdges[i]);
+                }
+            }
+            node.addReward((node.getPlayer() == CheckersData.BLACK) ? result : 1.0 - result);
+            if (rave) {
+                // Every move below this node is now in the AMAF sets
+                for (int edge = 0; edge < node.getChildren().size(); edge++) {
+                    if (wasPlayed(node.getEnemy(), node.getChildMove(edge))) {
+                        node.getChildren().get(edge).addAmafResult((node.getEnemy() == CheckersData.BLACK) ? result : 1.0 - result);
+                    }
+                }
+                if (i > 0) {
+                    recordMove(node.getPlayer(), path.get(i - 1).getChildMove(pathEdges[i - 1]));
+                }
+            }
+        }
     }
 
     /**
-     * Backpropagate the result of a playout
-     * @param node The node to backpropagate from
-     * @param result The result of the playout
+     * Prove a node from its own state or its children's proven values
+     * @param node The node to update
+     * @return True if the node is proven
      */
-    private void backpropagate(MCNode node, String result) {
-        while (node != null) {
-            node.addPlayout();
-            if (node.getPlayer() == CheckersData.RED && "WIN".equals(result)) {
-                node.addWin();
-            } else if (node.getPlayer() == CheckersData.BLACK && "LOSE".equals(result)) {
-                node.addWin();
+    private boolean updateProvenValue(MCNode node) {
+        if (node.isProven()) {
+            return true;
+        }
+        if (isTerminal(node)) {
+            node.setProvenValue(MCNode.PROVEN_WIN); // The side to move has no legal move
+            return true;
+        }
+        boolean allLost = node.isFullyExpanded();
+        for (MCNode child : node.getChildren()) {
+            if (child.getProvenValue() == MCNode.PROVEN_WIN) {
+                node.setProvenValue(MCNode.PROVEN_LOSS);
+                return true;
             }
-            node = node.getParent();
+            allLost &= child.getProvenValue() == MCNode.PROVEN_LOSS;
+        }
+        if (allLost) {
+            node.setProvenValue(MCNode.PROVEN_WIN);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add a move to the AMAF set of its side for the current iteration.
+     */
+    private void recordMove(int player, CheckersMove move) {
+        if (rave) {
+            playedAt[sideIndex(player)][moveKey(move)] = iteration;
         }
     }
 
+    private void recordMove(int player, long move) {
+        if (rave) {
+            playedAt[sideIndex(player)][GameBoard.moveFrom(move) * BoardGeometry.MAX_SQUARES + GameBoard.moveTo(move)] = iteration;
+        }
+    }
+
+    private boolean wasPlayed(int player, CheckersMove move) {
+        return playedAt[sideIndex(player)][moveKey(move)] == iteration;
+    }
+
+    private int moveKey(CheckersMove move) {
+        return move.fromSquare(geometry) * BoardGeometry.MAX_SQUARES + move.toSquare(geometry);
+    }
+
+    private static int sideIndex(int player) {
+        return (player == CheckersData.BLACK) ? 1 : 0;
+    }
+
     /**
-     * Calculate the UCB value of a node
-     * @param node The node to calculate the UCB value of
-     * @return The UCB value of the node
+     * Calculate the UCB value of a child. The win rate is the child's own, which includes
+     * playouts through other parents when transpositions are shared; exploration counts
+     * the visits of the edge from this parent.
+     * @param parentNode The node being selected from
+     * @param edge Index of the child
+     * @return The UCB value of the child
      */
-    private double ucbValue(MCNode node) {
-        if (node.getPlayouts() == 0) {
+    private double ucbValue(MCNode parentNode, int edge) {
+        MCNode node = parentNode.getChildren().get(edge);
+        double visits = parentNode.getChildVisits(edge);
+        if (visits == 0 || node.getPlayouts() == 0) {
             return Double.POSITIVE_INFINITY;
         }
-        MCNode parentNode = node.getParent();
         double winRate = node.getWins() / node.getPlayouts();
-        double explorationTerm = EXPLORATION_CONSTANT * Math.sqrt(Math.log(parentNode.getPlayouts()) / node.getPlayouts());
+        if (rave && node.getAmafPlayouts() > 0) {
+            // beta goes from 1 towards 0 as the node's own playouts grow
+            double beta = Math.sqrt(RAVE_EQUIVALENCE / (3 * node.getPlayouts() + RAVE_EQUIVALENCE));
+            winRate = (1 - beta) * winRate + beta * node.getAmafWins() / node.getAmafPlayouts();
+        }
+        double explorationTerm = EXPLORATION_CONSTANT * Math.sqrt(Math.log(parentNode.getPlayouts()) / visits);
         return winRate + explorationTerm;
     }
 
@@ -135,16 +841,6 @@ public class MonteCarloTreeSearch extends AdversarialSearch {
      * @return True if the node is terminal, false otherwise
      */
     private boolean isTerminal(MCNode node) {
-        return isTerminal(node.getState(), node.getPlayer());
-    }
-
-    /**
-     * Check if a state is terminal
-     * @param state The state to check
-     * @param player The player to check for
-     * @return True if the state is terminal, false otherwise
-     */
-    private boolean isTerminal(CheckersData state, int player) {
-        return state.getLegalMoves(player) == null;
+        return node.getLegalMoves() == null;
     }
 }
@@ -0,0 +1,180 @@
+package edu.iastate.cs472.proj2;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache from positions to their legal moves, packed as by
+ * GameBoard.getLegalMoves(int, long[]), so a position searched again (by the next
+ * iteration of a search, through a transposition or by another search) has its moves
+ * copied rather than generated, multi-jumps and all.
+ *
+ * A position is keyed by its Zobrist key with the side to move (GameBoard.hashKey).
+ * The table is open addressing in buckets of WAYS slots: the low bits of the key pick a
+ * bucket, and the position takes any slot in it. A full bucket evicts by the clock
+ * algorithm, an approximation of least recently used: every hit marks its slot, and the
+ * bucket's clock hand passes over marked slots, clearing the marks, until it finds an
+ * unmarked one. Positions with more than SLOT_MOVES moves are not cached.
+ *
+ * The cache may be shared by any number of threads without locks. Each slot has a stamp
+ * that is odd while the slot is written: a reader copies the slot and only keeps the copy
+ * if the stamp was even and unchanged over the copy, and a writer who finds the slot
+ * being written leaves it alone. The hit and miss counts are kept with LongAdders.
+ */
+class MoveCache {
+    static final int WAYS = 8;
+    static final int SLOT_MOVES = 32; // Most moves of a cached position
+
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] keys;
+    private final int[] counts;
+    private final long[] moves;    // SLOT_MOVES moves per slot
+    private final long[] stamps;   // 0 while the slot is empty, odd while it is written
+    private final boolean[] referenced;
+    private final byte[] hands;    // Clock hand of each bucket, the way it points to
+    private final int bucketMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity the number of positions to hold, rounded up to a power of two of at
+     *                 least WAYS
+     */
+    MoveCache(int capacity) {
+        int buckets = Math.max(1, Integer.highestOneBit((capacity + WAYS - 1) / WAYS - 1) << 1);
+        int slots = buckets * WAYS;
+        keys = new long[slots];
+        counts = new int[slots];
+        moves = new long[slots * SLOT_MOVES];
+        stamps = new long[slots];
+        referenced = new boolean[slots];
+        hands = new byte[buckets];
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * @return The number of positions the cache holds at most
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Copy the moves of a position from the cache into a buffer, or generate them into it
+     * and cache them.
+     *
+     * @param state  the position
+     * @param player the side to move, RED or BLACK
+     * @param key    state.hashKey(player)
+     * @param buffer the buffer the moves are written to, at least GameBoard.MAX_MOVES long
+     * @return The number of legal moves, 0 if the player cannot move
+     */
+    int legalMoves(GameBoard state, int player, long key, long[] buffer) {
+        int count = get(key, buffer);
+        if (count < 0) {
+            count = state.getLegalMoves(player, buffer);
+            put(key, buffer, count);
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of moves copied into the buffer, or -1 if the position is not cached
+     */
+    int get(long key, long[] buffer) {
+        int base = (int) (key & bucketMask) * WAYS;
+        for (int slot = base; slot < base + WAYS; slot++) {
+            long stamp = (long) STAMPS.getAcquire(stamps, slot);
+            if (keys[slot] != key || (stamp & 1) != 0 || stamp == 0) {
+                continue;
+            }
+            int count = counts[slot];
+            if (count > SLOT_MOVES) {
+                break; // Torn by a writer
+            }
+            System.arraycopy(moves, slot * SLOT_MOVES, buffer, 0, count);
+            VarHandle.acquireFence();
+            if ((long) STAMPS.getOpaque(stamps, slot) != stamp) {
+                break; // Written while it was copied
+            }
+            referenced[slot] = true;
+            hits.increment();
+            return count;
+        }
+        misses.increment();
+        return -1;
+    }
+
+    /**
+     * Cache the moves of a position, unless it has more than SLOT_MOVES of them.
+     */
+    void put(long key, long[] buffer, int count) {
+        if (count > SLOT_MOVES) {
+            return;
+        }
+        int bucket = (int) (key & bucketMask);
+        int base = bucket * WAYS;
+        int victim = -1;
+        for (int slot = base; slot < base + WAYS; slot++) {
+            if (stamps[slot] == 0 || keys[slot] == key) {
+                victim = slot;
+                break;
+            }
+        }
+        if (victim < 0) {
+            // Second chance: pass over the recently used slots, clearing their marks
+            int hand = hands[bucket];
+            while (referenced[base + hand]) {
+                referenced[base + hand] = false;
+                hand = (hand + 1) % WAYS;
+            }
+            victim = base + hand;
+            hands[bucket] = (byte) ((hand + 1) % WAYS);
+            evictions.increment();
+        }
+
+        long stamp = (long) STAMPS.getOpaque(stamps, victim);
+        if ((stamp & 1) != 0 || !STAMPS.compareAndSet(stamps, victim, stamp, stamp + 1)) {
+            return; // Another thread is writing the slot
+        }
+        keys[victim] = key;
+        counts[victim] = count;
+        System.arraycopy(buffer, 0, moves, victim * SLOT_MOVES, count);
+        referenced[victim] = false;
+        STAMPS.setRelease(stamps, victim, stamp + 2);
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The fraction of lookups that found their position, 0 before any lookup
+     */
+    double hitRate() {
+        long found = hits.sum();
+        long total = found + misses.sum();
+        return (total == 0) ? 0 : (double) found / total;
+    }
+
+    /**
+     * Start counting hits, misses and evictions from zero.
+     */
+    void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+}
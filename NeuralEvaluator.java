@@ -0,0 +1,99 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates positions with a NeuralNetwork. Inside a search the hidden layer
+ * (the accumulator) is kept on a stack with one entry per ply, and a move only
+ * subtracts the input weights of the pieces that left a square and adds those of
+ * the pieces that arrived, instead of summing all 128 inputs again.
+ *
+ * An instance holds the accumulator stack of one search and is not thread-safe;
+ * any number of instances can share one network.
+ */
+public class NeuralEvaluator implements IncrementalEvaluator {
+    private final NeuralNetwork network;
+    private final NeuralKernels kernels = NeuralKernels.get();
+    private final short[] scratch;
+    private short[][] accumulators = new short[32][];
+    private int top = -1;
+
+    public NeuralEvaluator(NeuralNetwork network) {
+        this.network = network;
+        this.scratch = new short[network.hiddenSize];
+    }
+
+    @Override
+    public int evaluate(CheckersData state, int player) {
+        refresh(scratch, state);
+        return output(scratch, player);
+    }
+
+    @Override
+    public void reset(CheckersData root) {
+        top = 0;
+        refresh(accumulator(0), root);
+    }
+
+    @Override
+    public void update(CheckersData parent, CheckersData child) {
+        short[] previous = accumulators[top];
+        short[] next = accumulator(++top);
+        System.arraycopy(previous, 0, next, 0, network.hiddenSize);
+
+        for (int square = 0; square < CheckersData.SQUARES; square++) {
+            int before = parent.pieceAt(square);
+            int after = child.pieceAt(square);
+            if (before != after) {
+                if (before != CheckersData.EMPTY) {
+                    kernels.subtract(next, network.inputWeights, network.inputOffset(before, square), network.hiddenSize);
+                }
+                if (after != CheckersData.EMPTY) {
+                    kernels.add(next, network.inputWeights, network.inputOffset(after, square), network.hiddenSize);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void undo() {
+        top--;
+    }
+
+    @Override
+    public int evaluateCurrent(int player) {
+        return output(accumulators[top], player);
+    }
+
+    /**
+     * Compute the accumulator of a position from scratch.
+     */
+    private void refresh(short[] accumulator, CheckersData state) {
+        System.arraycopy(network.hiddenBias, 0, accumulator, 0, network.hiddenSize);
+        for (int square = 0; square < CheckersData.SQUARES; square++) {
+            int piece = state.pieceAt(square);
+            if (piece != CheckersData.EMPTY) {
+                kernels.add(accumulator, network.inputWeights, network.inputOffset(piece, square), network.hiddenSize);
+            }
+        }
+    }
+
+    private int output(short[] accumulator, int player) {
+        int sum = kernels.clippedDot(accumulator, network.outputWeights, network.hiddenSize, NeuralNetwork.ACTIVATION_CEILING);
+        int score = (sum + network.outputBias) / network.outputScale;
+        return (player == CheckersData.BLACK) ? score : -score;
+    }
+
+    /**
+     * @return The accumulator at the given ply, allocating it on first use.
+     */
+    private short[] accumulator(int ply) {
+        if (ply >= accumulators.length) {
+            accumulators = Arrays.copyOf(accumulators, 2 * accumulators.length);
+        }
+        if (accumulators[ply] == null) {
+            accumulators[ply] = new short[network.hiddenSize];
+        }
+        return accumulators[ply];
+    }
+}
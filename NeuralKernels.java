@@ -0,0 +1,64 @@
+package edu.iastate.cs472.proj2;
+
+/**
+ * The int16 arithmetic of NeuralEvaluator. The scalar implementation always works;
+ * VectorNeuralKernels (vector/, built separately) does the same with the Java Vector API
+ * and is used when it was compiled and the jdk.incubator.vector module is present (run
+ * with --add-modules jdk.incubator.vector).
+ */
+class NeuralKernels {
+    private static final NeuralKernels INSTANCE = create();
+
+    /**
+     * @return The vectorized kernels if the Vector API is available, else the scalar ones.
+     */
+    static NeuralKernels get() {
+        return INSTANCE;
+    }
+
+    private static NeuralKernels create() {
+        try {
+            return (NeuralKernels) Class.forName("edu.iastate.cs472.proj2.VectorNeuralKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new NeuralKernels();
+        }
+    }
+
+    /**
+     * @return A short name of the implementation, for diagnostics.
+     */
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * accumulator[i] += weights[offset + i] for i in [0, length).
+     */
+    void add(short[] accumulator, short[] weights, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    /**
+     * accumulator[i] -= weights[offset + i] for i in [0, length).
+     */
+    void subtract(short[] accumulator, short[] weights, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    /**
+     * @return The sum over i of clamp(accumulator[i], 0, ceiling) * weights[i].
+     */
+    int clippedDot(short[] accumulator, short[] weights, int length, int ceiling) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            int activation = Math.min(Math.max(accumulator[i], 0), ceiling);
+            sum += activation * weights[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,143 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The weights of a small quantized evaluation network, shared read-only by any number
+ * of NeuralEvaluators.
+ *
+ * The network has one input per piece type and playable square (4 * 32 = 128 inputs,
+ * input (piece - 1) * 32 + square is 1 when that piece stands on that square), one
+ * hidden layer of int16 accumulators with a clipped ReLU to [0, ACTIVATION_CEILING],
+ * and one output: (sum of activation * output weight + output bias) / output scale,
+ * the score for BLACK on the scale of AlphaBetaSearch.
+ *
+ * File format, all values little-endian:
+ * <pre>
+ *   int   MAGIC
+ *   int   VERSION
+ *   int   inputs, must be INPUTS
+ *   int   hidden size H
+ *   short inputWeights[INPUTS][H]   (the H weights of an input are contiguous)
+ *   short hiddenBias[H]
+ *   short outputWeights[H]
+ *   int   outputBias
+ *   int   outputScale
+ * </pre>
+ */
+public class NeuralNetwork {
+    static final int MAGIC = 0x45554E43; // "CNUE"
+    static final int VERSION = 1;
+    static final int INPUTS = 4 * CheckersData.SQUARES;
+    static final int ACTIVATION_CEILING = 127;
+
+    final int hiddenSize;
+    final short[] inputWeights;
+    final short[] hiddenBias;
+    final short[] outputWeights;
+    final int outputBias;
+    final int outputScale;
+
+    NeuralNetwork(int hiddenSize, short[] inputWeights, short[] hiddenBias, short[] outputWeights, int outputBias, int outputScale) {
+        if (hiddenSize <= 0 || inputWeights.length != INPUTS * hiddenSize
+                || hiddenBias.length != hiddenSize || outputWeights.length != hiddenSize || outputScale <= 0) {
+            throw new IllegalArgumentException("Inconsistent network dimensions");
+        }
+        this.hiddenSize = hiddenSize;
+        this.inputWeights = inputWeights;
+        this.hiddenBias = hiddenBias;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+        this.outputScale = outputScale;
+    }
+
+    /**
+     * @return The offset of the weights of the given piece on the given square in inputWeights.
+     */
+    int inputOffset(int piece, int square) {
+        return ((piece - 1) * CheckersData.SQUARES + square) * hiddenSize;
+    }
+
+    static NeuralNetwork load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    static NeuralNetwork read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (readInt(in) != MAGIC) {
+            throw new IOException("Not a network file");
+        }
+        int version = readInt(in);
+        if (version != VERSION) {
+            throw new IOException("Unsupported network version " + version);
+        }
+        int inputs = readInt(in);
+        int hiddenSize = readInt(in);
+        if (inputs != INPUTS || hiddenSize <= 0 || hiddenSize > (1 << 16)) {
+            throw new IOException("Bad network dimensions " + inputs + "x" + hiddenSize);
+        }
+        short[] inputWeights = readShorts(in, INPUTS * hiddenSize);
+        short[] hiddenBias = readShorts(in, hiddenSize);
+        short[] outputWeights = readShorts(in, hiddenSize);
+        int outputBias = readInt(in);
+        int outputScale = readInt(in);
+        if (outputScale <= 0) {
+            throw new IOException("Bad output scale " + outputScale);
+        }
+        return new NeuralNetwork(hiddenSize, inputWeights, hiddenBias, outputWeights, outputBias, outputScale);
+    }
+
+    void save(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(out);
+        }
+    }
+
+    void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        writeInt(out, MAGIC);
+        writeInt(out, VERSION);
+        writeInt(out, INPUTS);
+        writeInt(out, hiddenSize);
+        writeShorts(out, inputWeights);
+        writeShorts(out, hiddenBias);
+        writeShorts(out, outputWeights);
+        writeInt(out, outputBias);
+        writeInt(out, outputScale);
+        out.flush();
+    }
+
+    private static int readInt(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static short[] readShorts(DataInputStream in, int count) throws IOException {
+        byte[] bytes = new byte[2 * count];
+        in.readFully(bytes);
+        short[] values = new short[count];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(values);
+        return values;
+    }
+
+    private static void writeInt(DataOutputStream out, int value) throws IOException {
+        out.writeInt(Integer.reverseBytes(value));
+    }
+
+    private static void writeShorts(DataOutputStream out, short[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asShortBuffer().put(values);
+        out.write(buffer.array());
+    }
+}
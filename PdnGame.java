@@ -0,0 +1,99 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A game of a PDN file: its tag pairs in file order, its moves in PDN notation and its
+ * result. Without a FEN tag a game starts from the usual opening position with BLACK
+ * to move, as in PDN.
+ *
+ * Results are written as in PDN, WHITE's (RED's) score first: "1-0" is a RED win,
+ * "0-1" a BLACK win and "1/2-1/2" a draw; "2-0", "0-2" and "1-1" are read as well.
+ */
+class PdnGame {
+    static final String UNKNOWN_RESULT = "*";
+
+    final Map<String, String> tags = new LinkedHashMap<>();
+    final List<String> moves = new ArrayList<>();
+    String result = UNKNOWN_RESULT;
+
+    /**
+     * @return The value of the tag, or null
+     */
+    String tag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * Set up the start position of the game.
+     *
+     * @return The side to move first, RED or BLACK
+     */
+    int startPosition(CheckersData state) {
+        String fen = tags.get("FEN");
+        if (fen != null) {
+            return PositionFormat.fromFen(fen, state);
+        }
+        state.setUpGame();
+        return CheckersData.BLACK;
+    }
+
+    /**
+     * Set the start position of the game as a FEN tag.
+     */
+    void setStartPosition(CheckersData state, int player) {
+        tags.put("SetUp", "1");
+        tags.put("FEN", PositionFormat.toFen(state, player));
+    }
+
+    /**
+     * @return BLACK's score, 1, 0.5 or 0, or NaN if the result is unknown
+     */
+    double blackScore() {
+        switch (result) {
+            case "1-0":
+            case "2-0":
+                return 0.0;
+            case "0-1":
+            case "0-2":
+                return 1.0;
+            case "1/2-1/2":
+            case "1-1":
+                return 0.5;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * @return The result text for BLACK's score, 1, 0.5 or 0
+     */
+    static String resultOf(double blackScore) {
+        if (blackScore == 1.0) {
+            return "0-1";
+        }
+        if (blackScore == 0.0) {
+            return "1-0";
+        }
+        return "1/2-1/2";
+    }
+
+    static boolean isResult(String token) {
+        switch (token) {
+            case "1-0":
+            case "0-1":
+            case "1/2-1/2":
+            case "2-0":
+            case "0-2":
+            case "1-1":
+            case "0-0":
+            case UNKNOWN_RESULT:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the games of a PDN file one at a time, so collections of any size can be
+ * processed in the memory of a single game. Comments, variations, move numbers,
+ * annotation glyphs and move annotations are skipped. The text is read as ISO-8859-1,
+ * one character per byte, so the offset of a game is its byte offset in the file.
+ */
+class PdnReader implements Closeable {
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position;
+    private int limit;
+    private long bufferStart; // file offset of buffer[0]
+    private long gameOffset = -1;
+    private final StringBuilder token = new StringBuilder();
+
+    PdnReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return The next game, or null at the end of the input
+     */
+    PdnGame next() throws IOException {
+        PdnGame game = null;
+        boolean inMoves = false;
+        while (true) {
+            int c = skipSpace();
+            if (c < 0) {
+                return finish(game);
+            }
+            if (c == '[') {
+                if (inMoves) {
+                    return finish(game); // The next game starts without a result in this one
+                }
+                if (game == null) {
+                    game = startGame();
+                }
+                position++;
+                readTag(game);
+            } else if (c == '{') {
+                skipPast('}');
+            } else if (c == ';') {
+                skipPast('\n');
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == ')' || c == '}' || c == ']') {
+                position++;
+            } else {
+                if (game == null) {
+                    game = startGame();
+                }
+                inMoves = true;
+                String text = readToken();
+                if (PdnGame.isResult(text)) {
+                    game.result = text;
+                    return game;
+                }
+                text = moveOf(text);
+                if (!text.isEmpty()) {
+                    game.moves.add(text);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The byte offset of the game last returned by next
+     */
+    long gameOffset() {
+        return gameOffset;
+    }
+
+    /**
+     * Take the result from the Result tag of a game whose moves do not end in one.
+     */
+    private static PdnGame finish(PdnGame game) {
+        if (game != null && game.result.equals(PdnGame.UNKNOWN_RESULT) && game.tag("Result") != null) {
+            game.result = game.tag("Result");
+        }
+        return game;
+    }
+
+    private PdnGame startGame() {
+        gameOffset = bufferStart + position;
+        return new PdnGame();
+    }
+
+    /**
+     * Strip move numbers ("12." or "12...") and annotations ("!", "?") from a token.
+     */
+    private static String moveOf(String text) {
+        int dot = text.lastIndexOf('.');
+        if (dot >= 0) {
+            text = text.substring(dot + 1);
+        }
+        if (text.startsWith("$")) {
+            return ""; // Numeric annotation glyph
+        }
+        int end = text.length();
+        while (end > 0 && (text.charAt(end - 1) == '!' || text.charAt(end - 1) == '?')) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    private void readTag(PdnGame game) throws IOException {
+        skipSpace();
+        token.setLength(0);
+        int c;
+        while ((c = peek()) >= 0 && c != '"' && c != ']' && !Character.isWhitespace(c)) {
+            token.append((char) c);
+            position++;
+        }
+        String name = token.toString();
+        skipSpace();
+        token.setLength(0);
+        if (peek() == '"') {
+            position++;
+            while ((c = read()) >= 0 && c != '"') {
+                if (c == '\\') {
+                    c = read();
+                }
+                if (c >= 0) {
+                    token.append((char) c);
+                }
+            }
+        }
+        skipPast(']');
+        game.tags.put(name, token.toString());
+    }
+
+    private String readToken() throws IOException {
+        token.setLength(0);
+        int c;
+        while ((c = peek()) >= 0 && !Character.isWhitespace(c) && "{}()[];".indexOf(c) < 0) {
+            token.append((char) c);
+            position++;
+        }
+        return token.toString();
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 0;
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '{') {
+                skipPast('}');
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            }
+        }
+    }
+
+    private void skipPast(char end) throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != end) {
+            // Skip
+        }
+    }
+
+    /**
+     * @return The first character that is not white space, not consumed, or -1
+     */
+    private int skipSpace() throws IOException {
+        int c;
+        while ((c = peek()) >= 0 && Character.isWhitespace(c)) {
+            position++;
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) {
+            position++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            bufferStart += limit;
+            position = 0;
+            limit = Math.max(0, in.read(buffer));
+            if (limit == 0) {
+                return -1;
+            }
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
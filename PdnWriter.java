@@ -0,0 +1,77 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Writes games in PDN: the tag pairs, a blank line, the numbered moves wrapped at
+ * LINE_WIDTH characters and the result, and a blank line after every game.
+ */
+class PdnWriter implements Closeable {
+    private static final int LINE_WIDTH = 79;
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder();
+
+    PdnWriter(Writer out) {
+        this.out = out;
+    }
+
+    void write(PdnGame game) throws IOException {
+        boolean hasResult = false;
+        for (Map.Entry<String, String> tag : game.tags.entrySet()) {
+            boolean isResult = tag.getKey().equals("Result");
+            String value = isResult ? game.result : tag.getValue();
+            hasResult |= isResult;
+            out.write('[' + tag.getKey() + " \"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"]\n");
+        }
+        if (!hasResult) {
+            out.write("[Result \"" + game.result + "\"]\n");
+        }
+        out.write('\n');
+
+        // Moves are numbered at BLACK's moves; a game that RED starts begins with "1..."
+        String fen = game.tag("FEN");
+        boolean blackMoves = fen == null || fen.trim().startsWith("B");
+        int number = 1;
+        line.setLength(0);
+        for (int i = 0; i < game.moves.size(); i++) {
+            // A number stays on the line of its move
+            if (blackMoves) {
+                append(number + ". " + game.moves.get(i));
+            } else if (i == 0) {
+                append(number + "... " + game.moves.get(i));
+            } else {
+                append(game.moves.get(i));
+            }
+            if (!blackMoves) {
+                number++;
+            }
+            blackMoves = !blackMoves;
+        }
+        append(game.result);
+        out.write(line.append('\n').append('\n').toString());
+    }
+
+    private void append(String text) throws IOException {
+        if (line.length() > 0 && line.length() + 1 + text.length() > LINE_WIDTH) {
+            out.write(line.append('\n').toString());
+            line.setLength(0);
+        }
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        line.append(text);
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,126 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the playouts per second of one CheckersData playout at a time per thread
+ * with BatchPlayout on the scalar and on the preferred (vector, when available) kernels,
+ * all on every core.
+ *
+ * Usage: java [--add-modules jdk.incubator.vector] edu.iastate.cs472.proj2.PlayoutBenchmark [seconds] [batch] [seed]
+ *
+ * Every thread plays out the same set of positions reached by random play from the opening.
+ */
+public class PlayoutBenchmark {
+
+    public static void main(String[] args) {
+        double seconds = (args.length > 0) ? Double.parseDouble(args[0]) : 5;
+        int batch = (args.length > 1) ? Integer.parseInt(args[1]) : 256;
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 472L;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        Random random = new Random(seed);
+        CheckersData[] positions = new CheckersData[batch];
+        int[] players = new int[batch];
+        for (int i = 0; i < batch; i++) {
+            positions[i] = new CheckersData();
+            players[i] = randomPosition(positions[i], random);
+        }
+        System.out.printf("threads: %d  batch: %d  kernels: %s%n", threads, batch, PlayoutKernels.get().name());
+
+        long nanos = (long) (seconds * 1e9);
+        report("per thread", threads, nanos, thread -> {
+            Random threadRandom = new Random(seed + thread);
+            for (int i = 0; i < batch; i++) {
+                playout(positions[i], players[i], threadRandom);
+            }
+            return batch;
+        });
+        report("batch scalar", threads, nanos, batchRunner(positions, players, seed, new PlayoutKernels()));
+        report("batch " + PlayoutKernels.get().name(), threads, nanos, batchRunner(positions, players, seed, PlayoutKernels.get()));
+    }
+
+    private interface Round {
+        /**
+         * @return The number of playouts made.
+         */
+        int run(int thread);
+    }
+
+    private static Round batchRunner(CheckersData[] positions, int[] players, long seed, PlayoutKernels kernels) {
+        BatchPlayout[] engines = new BatchPlayout[Runtime.getRuntime().availableProcessors()];
+        double[][] results = new double[engines.length][positions.length];
+        for (int i = 0; i < engines.length; i++) {
+            engines[i] = new BatchPlayout(positions.length, seed + i, kernels);
+        }
+        return thread -> {
+            engines[thread].play(positions, players, positions.length, results[thread]);
+            return positions.length;
+        };
+    }
+
+    private static void report(String name, int threads, long nanos, Round round) {
+        // Warm up, then measure
+        measure(threads, nanos / 4, round);
+        long start = System.nanoTime();
+        long playouts = measure(threads, nanos, round);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-20s playouts/s: %12.0f%n", name, playouts / elapsed);
+    }
+
+    private static long measure(int threads, long nanos, Round round) {
+        long deadline = System.nanoTime() + nanos;
+        AtomicLong playouts = new AtomicLong();
+        IntStream.range(0, threads).parallel().forEach(thread -> {
+            while (System.nanoTime() < deadline) {
+                playouts.addAndGet(round.run(thread));
+            }
+        });
+        return playouts.get();
+    }
+
+    /**
+     * A uniformly random playout on CheckersData, as MonteCarloTreeSearch plays it.
+     */
+    private static double playout(CheckersData position, int player, Random random) {
+        CheckersData state = new CheckersData(position);
+        long[] moves = new long[CheckersData.MAX_MOVES];
+        int quietMoves = BatchPlayout.STEPS_TO_DRAW;
+        int pieces = state.numberOfPieces();
+        while (true) {
+            int count = state.getLegalMoves(player, moves);
+            if (count == 0) {
+                return (player == CheckersData.BLACK) ? 0.0 : 1.0;
+            }
+            state.makeMove(moves[random.nextInt(count)]);
+            int remaining = state.numberOfPieces();
+            if (remaining != pieces) {
+                pieces = remaining;
+                quietMoves = BatchPlayout.STEPS_TO_DRAW;
+            } else if (--quietMoves == 0) {
+                return 0.5;
+            }
+            player = (player == CheckersData.RED) ? CheckersData.BLACK : CheckersData.RED;
+        }
+    }
+
+    /**
+     * Play a few random moves from the opening.
+     * @return The side to move
+     */
+    private static int randomPosition(CheckersData state, Random random) {
+        int player = CheckersData.RED;
+        int plies = random.nextInt(20);
+        for (int ply = 0; ply < plies; ply++) {
+            CheckersMove[] moves = state.getLegalMoves(player);
+            if (moves == null) {
+                break;
+            }
+            state.makeMove(moves[random.nextInt(moves.length)]);
+            player = (player == CheckersData.RED) ? CheckersData.BLACK : CheckersData.RED;
+        }
+        return player;
+    }
+}
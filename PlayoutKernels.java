@@ -0,0 +1,130 @@
+package edu.iastate.cs472.proj2;
+
+/**
+ * The bitboard arithmetic of BatchPlayout. The scalar implementation always works;
+ * VectorPlayoutKernels (vector/, built separately) does the same with the Java Vector API
+ * and is used when it was compiled and the jdk.incubator.vector module is present (run
+ * with --add-modules jdk.incubator.vector).
+ *
+ * A bitboard holds bit n for playable square n (see CheckersData). Boards are seen from
+ * the side to move, whose men move down the board (towards higher squares), so one set
+ * of masks serves both colours.
+ */
+class PlayoutKernels {
+    static final int DOWN_LEFT = 0;
+    static final int DOWN_RIGHT = 1;
+    static final int UP_LEFT = 2;
+    static final int UP_RIGHT = 3;
+    static final int DIRECTIONS = 4;
+
+    // Squares of the even rows (dark squares in columns 0, 2, 4, 6) and of the odd rows
+    static final int EVEN_ROWS = 0x0F0F0F0F;
+    static final int ODD_ROWS = 0xF0F0F0F0;
+    // Even row squares in column 0 and odd row squares in column 7
+    static final int LEFT_EDGE = 0x01010101;
+    static final int RIGHT_EDGE = 0x80808080;
+
+    private static final PlayoutKernels INSTANCE = create();
+
+    /**
+     * @return The vectorized kernels if the Vector API is available, else the scalar ones.
+     */
+    static PlayoutKernels get() {
+        return INSTANCE;
+    }
+
+    private static PlayoutKernels create() {
+        try {
+            return (PlayoutKernels) Class.forName("edu.iastate.cs472.proj2.VectorPlayoutKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new PlayoutKernels();
+        }
+    }
+
+    /**
+     * @return A short name of the implementation, for diagnostics.
+     */
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * For the games in [0, count): jumps[d][i] and steps[d][i] are the squares of the side
+     * to move whose piece can jump or step in direction d. Men only move down.
+     */
+    void moveMasks(int[] men, int[] kings, int[] enemyMen, int[] enemyKings, int count, int[][] jumps, int[][] steps) {
+        moveMasks(men, kings, enemyMen, enemyKings, 0, count, jumps, steps);
+    }
+
+    /**
+     * The scalar moveMasks over the games in [from, to).
+     */
+    static void moveMasks(int[] men, int[] kings, int[] enemyMen, int[] enemyKings, int from, int to, int[][] jumps, int[][] steps) {
+        for (int i = from; i < to; i++) {
+            int own = men[i] | kings[i];
+            int enemy = enemyMen[i] | enemyKings[i];
+            int empty = ~(own | enemy);
+            // Walk back from the empty target squares to the pieces that can reach them
+            steps[DOWN_LEFT][i] = upRight(empty) & own;
+            steps[DOWN_RIGHT][i] = upLeft(empty) & own;
+            steps[UP_LEFT][i] = downRight(empty) & kings[i];
+            steps[UP_RIGHT][i] = downLeft(empty) & kings[i];
+            jumps[DOWN_LEFT][i] = upRight(upRight(empty) & enemy) & own;
+            jumps[DOWN_RIGHT][i] = upLeft(upLeft(empty) & enemy) & own;
+            jumps[UP_LEFT][i] = downRight(downRight(empty) & enemy) & kings[i];
+            jumps[UP_RIGHT][i] = downLeft(downLeft(empty) & enemy) & kings[i];
+        }
+    }
+
+    /**
+     * Advance the xorshift generators in [0, count). Seeds must not be 0.
+     */
+    void nextRandom(int[] seeds, int count) {
+        for (int i = 0; i < count; i++) {
+            seeds[i] = xorshift(seeds[i]);
+        }
+    }
+
+    static int xorshift(int x) {
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        return x;
+    }
+
+    /**
+     * @return The squares one step in the given direction from the given squares.
+     */
+    static int shift(int direction, int squares) {
+        switch (direction) {
+            case DOWN_LEFT:
+                return downLeft(squares);
+            case DOWN_RIGHT:
+                return downRight(squares);
+            case UP_LEFT:
+                return upLeft(squares);
+            default:
+                return upRight(squares);
+        }
+    }
+
+    // Square n is in row n / 4; the column step depends on whether the row is even or odd.
+    // Squares that would leave the board are masked off or shifted out.
+
+    static int downLeft(int squares) {
+        return ((squares & EVEN_ROWS & ~LEFT_EDGE) << 3) | ((squares & ODD_ROWS) << 4);
+    }
+
+    static int downRight(int squares) {
+        return ((squares & EVEN_ROWS) << 4) | ((squares & ODD_ROWS & ~RIGHT_EDGE) << 5);
+    }
+
+    static int upLeft(int squares) {
+        return ((squares & EVEN_ROWS & ~LEFT_EDGE) >>> 5) | ((squares & ODD_ROWS) >>> 4);
+    }
+
+    static int upRight(int squares) {
+        return ((squares & EVEN_ROWS) >>> 4) | ((squares & ODD_ROWS & ~RIGHT_EDGE) >>> 3);
+    }
+}
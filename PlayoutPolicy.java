@@ -0,0 +1,101 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.Random;
+
+/**
+ * Chooses the moves of Monte Carlo playouts. Every legal move gets the weight
+ * 1 + captureWeight * (pieces it captures) + kingCaptureWeight * (kings it captures)
+ * + promotionWeight (if it crowns a piece) + backRowPenalty (if it moves a piece off
+ * its own back row, as a negative weight), and is chosen with probability proportional
+ * to its weight. With all weights zero the playout is uniformly random.
+ */
+public class PlayoutPolicy {
+    private final double captureWeight;
+    private final double kingCaptureWeight;
+    private final double promotionWeight;
+    private final double backRowPenalty;
+    private final double[] weights = new double[GameBoard.MAX_MOVES];
+
+    PlayoutPolicy(double captureWeight, double kingCaptureWeight, double promotionWeight, double backRowPenalty) {
+        if (backRowPenalty >= 1) {
+            throw new IllegalArgumentException("A back row penalty of 1 or more leaves no weight");
+        }
+        this.captureWeight = captureWeight;
+        this.kingCaptureWeight = kingCaptureWeight;
+        this.promotionWeight = promotionWeight;
+        this.backRowPenalty = backRowPenalty;
+    }
+
+    /**
+     * @return A policy that picks every legal move with the same probability.
+     */
+    static PlayoutPolicy uniform() {
+        return new PlayoutPolicy(0, 0, 0, 0);
+    }
+
+    /**
+     * @return A policy that favours long jumps, capturing kings and crowning, and keeps
+     * the back row guarded.
+     */
+    static PlayoutPolicy heavy() {
+        return new PlayoutPolicy(2, 3, 4, 0.5);
+    }
+
+    boolean isUniform() {
+        return captureWeight == 0 && kingCaptureWeight == 0 && promotionWeight == 0 && backRowPenalty == 0;
+    }
+
+    /**
+     * @param state  the position
+     * @param player the side to move, RED or BLACK
+     * @param moves  the packed legal moves of the side to move (see GameBoard.getLegalMoves(int, long[]))
+     * @param count  the number of legal moves, at least 1
+     * @param random source of randomness
+     * @return One of the moves
+     */
+    long chooseMove(GameBoard state, int player, long[] moves, int count, Random random) {
+        if (count == 1 || isUniform()) {
+            return moves[random.nextInt(count)];
+        }
+
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            weights[i] = weightOf(state, player, moves[i]);
+            total += weights[i];
+        }
+        double pick = random.nextDouble() * total;
+        for (int i = 0; i < count - 1; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return moves[i];
+            }
+        }
+        return moves[count - 1];
+    }
+
+    private double weightOf(GameBoard state, int player, long move) {
+        double weight = 1;
+        BoardGeometry geometry = state.geometry();
+        int fromRow = geometry.squareRow[GameBoard.moveFrom(move)];
+        int piece = state.pieceAt(GameBoard.moveFrom(move));
+
+        long captures = GameBoard.moveCaptures(move);
+        weight += captureWeight * Long.bitCount(captures);
+        for (; captures != 0; captures &= captures - 1) {
+            int jumped = state.pieceAt(Long.numberOfTrailingZeros(captures));
+            if (jumped == CheckersData.RED_KING || jumped == CheckersData.BLACK_KING) {
+                weight += kingCaptureWeight;
+            }
+        }
+
+        int toRow = geometry.squareRow[GameBoard.moveTo(move)];
+        if ((piece == CheckersData.RED && toRow == 0) || (piece == CheckersData.BLACK && toRow == geometry.size - 1)) {
+            weight += promotionWeight;
+        }
+        int backRow = (player == CheckersData.RED) ? geometry.size - 1 : 0;
+        if (fromRow == backRow && piece == player) {
+            weight -= backRowPenalty;
+        }
+        return weight;
+    }
+}
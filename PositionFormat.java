@@ -0,0 +1,281 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.Arrays;
+
+/**
+ * Reads and writes positions, i.e. a board and the side to move, in a fixed-width binary
+ * encoding and as PDN FEN strings, and moves in PDN notation.
+ *
+ * The binary encoding is SIZE bytes, three little-endian ints: the squares holding BLACK
+ * pieces, the squares holding RED pieces (bit n for playable square n, see CheckersData),
+ * and one bit per occupied square in square order that is set for kings, with bit 31 set
+ * when BLACK is to move. It holds any position with at most 31 pieces.
+ *
+ * PDN numbers the squares 1 to 32 row by row from BLACK's side, right to left as this
+ * board is drawn (the board of this program has a playable square in the top left
+ * corner, the PDN board has it on the right). BLACK is PDN's "B" and starts on squares
+ * 1 to 12, RED is "W" and starts on 21 to 32. A FEN string is the side to move and the
+ * pieces of both sides, kings with a K, e.g. "W:W21,22,K30:B1-3,K9".
+ */
+class PositionFormat {
+    static final int SIZE = 12;
+    private static final int BLACK_TO_MOVE = 1 << 31;
+
+    /**
+     * Write a position at the given offset.
+     *
+     * @param state  the board
+     * @param player the side to move, RED or BLACK
+     */
+    static void encode(CheckersData state, int player, byte[] out, int offset) {
+        int black = 0;
+        int red = 0;
+        int kings = 0;
+        int pieces = 0;
+        for (int square = 0; square < CheckersData.SQUARES; square++) {
+            int piece = state.pieceAt(square);
+            if (piece == CheckersData.EMPTY) {
+                continue;
+            }
+            if (pieces == 31) {
+                throw new IllegalArgumentException("More than 31 pieces on the board");
+            }
+            if (piece == CheckersData.BLACK || piece == CheckersData.BLACK_KING) {
+                black |= 1 << square;
+            } else {
+                red |= 1 << square;
+            }
+            if (piece == CheckersData.RED_KING || piece == CheckersData.BLACK_KING) {
+                kings |= 1 << pieces;
+            }
+            pieces++;
+        }
+        if (player == CheckersData.BLACK) {
+            kings |= BLACK_TO_MOVE;
+        }
+        putInt(out, offset, black);
+        putInt(out, offset + 4, red);
+        putInt(out, offset + 8, kings);
+    }
+
+    /**
+     * Read a position from the given offset into state.
+     *
+     * @return The side to move, RED or BLACK
+     */
+    static int decode(byte[] in, int offset, CheckersData state) {
+        int black = getInt(in, offset);
+        int red = getInt(in, offset + 4);
+        int kings = getInt(in, offset + 8);
+        if ((black & red) != 0) {
+            throw new IllegalArgumentException("A square holds both a RED and a BLACK piece");
+        }
+        int pieces = 0;
+        for (int square = 0; square < CheckersData.SQUARES; square++) {
+            int bit = 1 << square;
+            int piece = CheckersData.EMPTY;
+            if (((black | red) & bit) != 0) {
+                boolean king = (kings & (1 << pieces++)) != 0;
+                if ((black & bit) != 0) {
+                    piece = king ? CheckersData.BLACK_KING : CheckersData.BLACK;
+                } else {
+                    piece = king ? CheckersData.RED_KING : CheckersData.RED;
+                }
+            }
+            state.board[CheckersData.SQUARE_ROW[square]][CheckersData.SQUARE_COL[square]] = piece;
+        }
+        return ((kings & BLACK_TO_MOVE) != 0) ? CheckersData.BLACK : CheckersData.RED;
+    }
+
+    private static void putInt(byte[] out, int offset, int value) {
+        for (int i = 0; i < 4; i++) {
+            out[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static int getInt(byte[] in, int offset) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value |= (in[offset + i] & 0xFF) << (8 * i);
+        }
+        return value;
+    }
+
+    /**
+     * @param square playable square index, 0 to 31
+     * @return The PDN number of the square, 1 to 32
+     */
+    static int pdnNumber(int square) {
+        return (square & ~3) + (3 - (square & 3)) + 1;
+    }
+
+    /**
+     * @param number PDN square number, 1 to 32
+     * @return The playable square index
+     */
+    static int squareOf(int number) {
+        if (number < 1 || number > CheckersData.SQUARES) {
+            throw new IllegalArgumentException("No square " + number);
+        }
+        return pdnNumber(number - 1) - 1; // The mapping is its own inverse
+    }
+
+    /**
+     * @return The position as a FEN string
+     */
+    static String toFen(CheckersData state, int player) {
+        StringBuilder fen = new StringBuilder();
+        fen.append((player == CheckersData.BLACK) ? 'B' : 'W');
+        appendPieces(fen.append(":W"), state, CheckersData.RED, CheckersData.RED_KING);
+        appendPieces(fen.append(":B"), state, CheckersData.BLACK, CheckersData.BLACK_KING);
+        return fen.toString();
+    }
+
+    private static void appendPieces(StringBuilder fen, CheckersData state, int man, int king) {
+        boolean first = true;
+        for (int number = 1; number <= CheckersData.SQUARES; number++) {
+            int piece = state.pieceAt(squareOf(number));
+            if (piece == man || piece == king) {
+                if (!first) {
+                    fen.append(',');
+                }
+                if (piece == king) {
+                    fen.append('K');
+                }
+                fen.append(number);
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * Set up the position of a FEN string. Square ranges such as "1-12" and a final
+     * period are accepted.
+     *
+     * @return The side to move, RED or BLACK
+     */
+    static int fromFen(String fen, CheckersData state) {
+        String[] fields = fen.trim().replace(".", "").split(":");
+        if (fields.length == 0 || fields[0].length() != 1) {
+            throw new IllegalArgumentException("Bad FEN \"" + fen + "\"");
+        }
+        int player = colourOf(fields[0].charAt(0), fen);
+        for (int[] row : state.board) {
+            Arrays.fill(row, CheckersData.EMPTY);
+        }
+        for (int f = 1; f < fields.length; f++) {
+            String field = fields[f].trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            int colour = colourOf(field.charAt(0), fen);
+            for (String item : field.substring(1).split(",")) {
+                item = item.trim();
+                if (item.isEmpty()) {
+                    continue;
+                }
+                boolean king = item.charAt(0) == 'K';
+                if (king) {
+                    item = item.substring(1);
+                }
+                int piece = (colour == CheckersData.BLACK)
+                        ? (king ? CheckersData.BLACK_KING : CheckersData.BLACK)
+                        : (king ? CheckersData.RED_KING : CheckersData.RED);
+                int dash = item.indexOf('-');
+                int first = Integer.parseInt((dash < 0) ? item : item.substring(0, dash));
+                int last = (dash < 0) ? first : Integer.parseInt(item.substring(dash + 1));
+                for (int number = first; number <= last; number++) {
+                    int square = squareOf(number);
+                    state.board[CheckersData.SQUARE_ROW[square]][CheckersData.SQUARE_COL[square]] = piece;
+                }
+            }
+        }
+        return player;
+    }
+
+    private static int colourOf(char c, String fen) {
+        switch (c) {
+            case 'W':
+                return CheckersData.RED;
+            case 'B':
+                return CheckersData.BLACK;
+            default:
+                throw new IllegalArgumentException("Bad colour '" + c + "' in FEN \"" + fen + "\"");
+        }
+    }
+
+    /**
+     * @return The move in PDN notation: "11-15" for a step, every landing square of a
+     * jump separated by 'x', e.g. "11x18x25"
+     */
+    static String moveText(CheckersMove move) {
+        StringBuilder text = new StringBuilder();
+        char separator = move.isJump() ? 'x' : '-';
+        for (int i = 0; i < move.rows.size(); i++) {
+            if (i > 0) {
+                text.append(separator);
+            }
+            text.append(pdnNumber(CheckersData.SQUARE_INDEX[move.rows.get(i)][move.cols.get(i)]));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Find the legal move that a move in PDN notation stands for. A jump may list only its
+     * first and last squares, or any of its intermediate ones as well.
+     *
+     * @param state  the position
+     * @param player the side to move, RED or BLACK
+     * @param text   the move, e.g. "11-15" or "11x25"
+     * @return The legal move, or null if there is none, or more than one that matches and
+     * none of them has exactly the given squares
+     */
+    static CheckersMove parseMove(CheckersData state, int player, String text) {
+        String[] parts = text.split("[-x]");
+        if (parts.length < 2) {
+            return null;
+        }
+        int[] squares = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                squares[i] = squareOf(Integer.parseInt(parts[i]));
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        CheckersMove[] moves = state.getLegalMoves(player);
+        if (moves == null) {
+            return null;
+        }
+        CheckersMove found = null;
+        boolean ambiguous = false;
+        for (CheckersMove move : moves) {
+            if (matches(move, squares)) {
+                if (move.rows.size() == squares.length) {
+                    return move; // Every square is given, e.g. a short jump of a king that could also circle back
+                }
+                ambiguous = found != null;
+                found = move;
+            }
+        }
+        return ambiguous ? null : found;
+    }
+
+    /**
+     * @return Whether the squares are the first and last squares of the move and the
+     * ones between appear along it in order.
+     */
+    private static boolean matches(CheckersMove move, int[] squares) {
+        if (move.fromSquare() != squares[0] || move.toSquare() != squares[squares.length - 1]) {
+            return false;
+        }
+        int next = 1;
+        for (int i = 1; i < move.rows.size() - 1 && next < squares.length - 1; i++) {
+            if (CheckersData.SQUARE_INDEX[move.rows.get(i)][move.cols.get(i)] == squares[next]) {
+                next++;
+            }
+        }
+        return next == squares.length - 1;
+    }
+}
@@ -0,0 +1,74 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.Random;
+
+/**
+ * Compares the number of nodes AlphaBetaSearch visits with and without principal
+ * variation search, aspiration windows and late move reductions over the same set
+ * of positions.
+ *
+ * Usage: java edu.iastate.cs472.proj2.SearchBenchmark [positions] [seed] [english|international]
+ *
+ * The positions are reached by random play from the opening with BLACK to move,
+ * so a run is reproducible for a given seed. They are English checkers positions
+ * unless international draughts is asked for.
+ */
+public class SearchBenchmark {
+
+    public static void main(String[] args) {
+        int positionCount = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : 472L;
+        boolean international = args.length > 2 && args[2].equals("international");
+
+        GameBoard[] positions = randomPositions(positionCount, new Random(seed), international);
+        System.out.println("positions: " + positions.length);
+
+        report("alpha-beta", positions, false, false, false);
+        report("pvs", positions, true, false, false);
+        report("pvs+aspiration", positions, true, true, false);
+        report("pvs+aspiration+lmr", positions, true, true, true);
+    }
+
+    private static void report(String name, GameBoard[] positions, boolean pvs, boolean aspiration, boolean reductions) {
+        long nodes = 0;
+        long start = System.nanoTime();
+        for (GameBoard position : positions) {
+            // A fresh search per position, so no run profits from another's transposition table
+            AlphaBetaSearch search = new AlphaBetaSearch();
+            search.setPrincipalVariationSearch(pvs);
+            search.setAspirationWindows(aspiration);
+            search.setLateMoveReductions(reductions);
+            search.setCheckersData(position);
+            search.makeMove(position.getLegalMoves(CheckersData.BLACK));
+            nodes += search.getNodeCount();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%-20s nodes: %12d  time: %6d ms%n", name, nodes, millis);
+    }
+
+    /**
+     * @return positions with BLACK to move and at least two legal moves
+     */
+    private static GameBoard[] randomPositions(int count, Random random, boolean international) {
+        GameBoard[] positions = new GameBoard[count];
+        int found = 0;
+        while (found < count) {
+            GameBoard state = international ? new InternationalBoard() : new CheckersData();
+            int player = CheckersData.RED;
+            int plies = 2 * (4 + random.nextInt(16)) - 1;
+            for (int ply = 0; ply < plies; ply++) {
+                CheckersMove[] moves = state.getLegalMoves(player);
+                if (moves == null) {
+                    break;
+                }
+                state.makeMove(moves[random.nextInt(moves.length)]);
+                player = (player == CheckersData.RED) ? CheckersData.BLACK : CheckersData.RED;
+            }
+            CheckersMove[] moves = state.getLegalMoves(CheckersData.BLACK);
+            if (player == CheckersData.BLACK && moves != null && moves.length > 1) {
+                positions[found++] = state;
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,18 @@
+package edu.iastate.cs472.proj2;
+
+/**
+ * Receives the progress of a search, for example to report it to a user interface.
+ * It is called on the thread that runs the search.
+ */
+interface SearchListener {
+    /**
+     * @param depth              depth of the iteration just completed, or of the principal
+     *                           variation for searches without iterations
+     * @param score              score of the position for the side to move, on the scale of the
+     *                           search's evaluation (see Evaluator); forced wins and losses
+     *                           are near +/-10000
+     * @param nodes              nodes searched so far (playouts for MonteCarloTreeSearch)
+     * @param principalVariation the expected moves from the position, best first
+     */
+    void info(int depth, int score, long nodes, CheckersMove[] principalVariation);
+}
@@ -0,0 +1,119 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Loads an EngineServer with sessions that each play games against themselves, one timed
+ * search per move, and reports the moves per second and the latency from "go" to
+ * "bestmove" over all sessions.
+ *
+ * Usage: java edu.iastate.cs472.proj2.ServerBenchmark [sessions] [seconds] [movetime] [engine] [port]
+ *
+ * Without a port it starts a server in this process, with one search thread per processor.
+ * With more sessions than search threads the latency shows how long searches queue.
+ */
+public class ServerBenchmark {
+    private static final int MAX_PLIES = 150; // A game that has not ended by then is started over
+
+    public static void main(String[] args) throws Exception {
+        int sessionCount = (args.length > 0) ? Integer.parseInt(args[0]) : 16;
+        double seconds = (args.length > 1) ? Double.parseDouble(args[1]) : 10;
+        int moveTime = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+        String engine = (args.length > 3) ? args[3] : "alphabeta";
+        int port = (args.length > 4) ? Integer.parseInt(args[4]) : -1;
+
+        if (port < 0) {
+            EngineServer server = new EngineServer(Runtime.getRuntime().availableProcessors(), 0, null, null);
+            ServerSocket socket = server.listen(0);
+            port = socket.getLocalPort();
+            Thread thread = new Thread(() -> server.serve(socket), "server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        System.out.printf("sessions: %d  movetime: %d ms  engine: %s  threads: %d%n",
+                sessionCount, moveTime, engine, Runtime.getRuntime().availableProcessors());
+
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        long[][] latencies = new long[sessionCount][];
+        Thread[] sessions = new Thread[sessionCount];
+        int serverPort = port;
+        long start = System.nanoTime();
+        for (int i = 0; i < sessionCount; i++) {
+            int session = i;
+            sessions[i] = new Thread(() -> {
+                try {
+                    latencies[session] = play(serverPort, engine, moveTime, end);
+                } catch (IOException e) {
+                    System.err.println("Session " + session + ": " + e.getMessage());
+                    latencies[session] = new long[0];
+                }
+            });
+            sessions[i].start();
+        }
+        for (Thread session : sessions) {
+            session.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            System.out.println("no moves");
+            return;
+        }
+        System.out.printf("moves: %d  moves/s: %.1f  latency ms: p50 %.1f  p99 %.1f  max %.1f%n",
+                all.length, all.length / elapsed, percentile(all, 0.50), percentile(all, 0.99), all[all.length - 1] / 1e6);
+    }
+
+    /**
+     * Play games on one connection until the end time.
+     *
+     * @return The nanoseconds from each "go" to its "bestmove"
+     */
+    private static long[] play(int port, String engine, int moveTime, long end) throws IOException {
+        List<Long> latencies = new ArrayList<>();
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setTcpNoDelay(true);
+            PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.println("engine " + engine);
+            StringBuilder moves = new StringBuilder();
+            int plies = 0;
+            while (System.nanoTime() < end) {
+                out.println("position startpos" + ((plies > 0) ? " moves" + moves : ""));
+                long sent = System.nanoTime();
+                out.println("go movetime " + moveTime);
+                String line;
+                while ((line = in.readLine()) != null && !line.startsWith("bestmove")) {
+                    // Skip info lines
+                }
+                if (line == null) {
+                    break;
+                }
+                latencies.add(System.nanoTime() - sent);
+                String move = line.substring("bestmove".length()).trim();
+                if (move.equals("none") || ++plies == MAX_PLIES) {
+                    moves.setLength(0);
+                    plies = 0;
+                } else {
+                    moves.append(' ').append(move);
+                }
+            }
+            out.println("quit");
+        }
+        return latencies.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,290 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the engines on a suite of test positions with known best moves and reports how
+ * many they solve and how much search each solution took, so that a change to an engine
+ * can be judged by comparing its results with those of an earlier run.
+ *
+ * Usage: java edu.iastate.cs472.proj2.SuiteRunner SUITE [--engine alphabeta|mcts|both]
+ *            [--depth N] [--playouts N] [--seed S] [--movetime MS] [--out FILE] [--baseline FILE]
+ *
+ * A suite has one position per line, as semicolon-separated fields: the position as a
+ * FEN string (see PositionFormat), then "bm" with the moves that solve it, or "am" with
+ * moves that fail it, and optionally "id" and a name. Blank lines and lines starting
+ * with '#' are skipped. A line of test-positions.txt:
+ *
+ *   W:W18,29,30,31:B5,7,11,12,21,K32 ; bm 18-14 ; id pos-01
+ *
+ * Every position is searched by a new engine: AlphaBetaSearch to the given depth,
+ * MonteCarloTreeSearch with the given playouts and a generator seeded with the given
+ * seed, so a run without a move time is repeatable node for node. A position counts as
+ * solved from the report after which the engine's best move stayed a solution; the nodes
+ * and time up to that report are its nodes and time to solve.
+ *
+ * The results are written as tab-separated lines, one per position and engine: id,
+ * engine, solved (1 or 0), the move played, nodes, milliseconds, and nodes and
+ * milliseconds to solve (-1 if unsolved). Nodes are playouts for MonteCarloTreeSearch.
+ * Given a baseline, a file of earlier results, the runner lists the positions whose
+ * result changed and compares the nodes to solve the positions solved in both runs.
+ */
+public class SuiteRunner {
+
+    /**
+     * A test position and the moves that solve it.
+     */
+    private static class TestPosition {
+        final String id;
+        final CheckersData state = new CheckersData();
+        final int player;
+        final List<String> bestMoves = new ArrayList<>(); // Every square of the moves, as PositionFormat.moveText writes them
+        final List<String> avoidMoves = new ArrayList<>();
+
+        TestPosition(String id, String fen) {
+            this.id = id;
+            this.player = PositionFormat.fromFen(fen, state);
+        }
+
+        boolean isSolution(CheckersMove move) {
+            String text = PositionFormat.moveText(move);
+            return bestMoves.isEmpty() ? !avoidMoves.contains(text) : bestMoves.contains(text);
+        }
+    }
+
+    /**
+     * The result of one engine on one position.
+     */
+    private static class Result {
+        boolean solved;
+        String move = "none";
+        long nodes;
+        long millis;
+        long solveNodes = -1;
+        long solveMillis = -1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: SuiteRunner SUITE [--engine alphabeta|mcts|both] [--depth N] [--playouts N]"
+                    + " [--seed S] [--movetime MS] [--out FILE] [--baseline FILE]");
+            return;
+        }
+        String engines = "both";
+        int depth = 10;
+        int playouts = 20000;
+        long seed = 472L;
+        long moveTime = 0;
+        Path out = null;
+        Path baseline = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--engine":
+                    engines = args[++i];
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--playouts":
+                    playouts = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--movetime":
+                    moveTime = Long.parseLong(args[++i]);
+                    break;
+                case "--out":
+                    out = Paths.get(args[++i]);
+                    break;
+                case "--baseline":
+                    baseline = Paths.get(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<TestPosition> suite = readSuite(Paths.get(args[0]));
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("# depth %d playouts %d seed %d movetime %d", depth, playouts, seed, moveTime));
+        for (String engine : new String[] {"alphabeta", "mcts"}) {
+            if (!engines.equals("both") && !engines.equals(engine)) {
+                continue;
+            }
+            int solved = 0;
+            long solveNodes = 0;
+            long millis = 0;
+            for (TestPosition position : suite) {
+                AdversarialSearch search;
+                if (engine.equals("mcts")) {
+                    MonteCarloTreeSearch mcts = new MonteCarloTreeSearch();
+                    mcts.setPlayoutLimit(playouts);
+                    mcts.setSeed(seed);
+                    search = mcts;
+                } else {
+                    AlphaBetaSearch alphaBeta = new AlphaBetaSearch();
+                    alphaBeta.setMaxDepth(depth);
+                    search = alphaBeta;
+                }
+                Result result = run(search, position, moveTime);
+                lines.add(String.join("\t", position.id, engine, result.solved ? "1" : "0", result.move,
+                        Long.toString(result.nodes), Long.toString(result.millis),
+                        Long.toString(result.solveNodes), Long.toString(result.solveMillis)));
+                if (result.solved) {
+                    solved++;
+                    solveNodes += result.solveNodes;
+                }
+                millis += result.millis;
+            }
+            System.out.printf("%-10s solved: %d/%d  nodes to solve: %d  time: %d ms%n",
+                    engine, solved, suite.size(), solveNodes, millis);
+        }
+
+        if (out != null) {
+            Files.write(out, lines, StandardCharsets.UTF_8);
+        }
+        if (baseline != null) {
+            compare(Files.readAllLines(baseline, StandardCharsets.UTF_8), lines);
+        }
+    }
+
+    private static List<TestPosition> readSuite(Path file) throws IOException {
+        List<TestPosition> suite = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    suite.add(parse(line, "line-" + number));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + ":" + number + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return suite;
+    }
+
+    private static TestPosition parse(String line, String defaultId) {
+        String[] fields = line.split(";");
+        String id = defaultId;
+        for (int f = 1; f < fields.length; f++) {
+            String[] words = fields[f].trim().split("\\s+");
+            if (words[0].equals("id") && words.length > 1) {
+                id = words[1].replace("\"", "");
+            }
+        }
+        TestPosition position = new TestPosition(id, fields[0]);
+        for (int f = 1; f < fields.length; f++) {
+            String[] words = fields[f].trim().split("\\s+");
+            if (!words[0].equals("bm") && !words[0].equals("am")) {
+                continue;
+            }
+            for (int w = 1; w < words.length; w++) {
+                CheckersMove move = PositionFormat.parseMove(position.state, position.player, words[w]);
+                if (move == null) {
+                    throw new IllegalArgumentException("Not a legal move: " + words[w]);
+                }
+                (words[0].equals("bm") ? position.bestMoves : position.avoidMoves).add(PositionFormat.moveText(move));
+            }
+        }
+        if (position.bestMoves.isEmpty() && position.avoidMoves.isEmpty()) {
+            throw new IllegalArgumentException("No bm or am");
+        }
+        return position;
+    }
+
+    private static Result run(AdversarialSearch search, TestPosition position, long moveTime) {
+        Result result = new Result();
+        long start = System.nanoTime();
+        search.setCheckersData(new CheckersData(position.state));
+        search.setPlayer(position.player);
+        search.setDeadline((moveTime > 0) ? start + moveTime * 1_000_000 : Long.MAX_VALUE);
+        search.setSearchListener((depth, score, nodes, line) -> {
+            result.nodes = nodes;
+            if (line.length > 0 && position.isSolution(line[0])) {
+                if (result.solveNodes < 0) {
+                    result.solveNodes = nodes;
+                    result.solveMillis = (System.nanoTime() - start) / 1_000_000;
+                }
+            } else {
+                result.solveNodes = -1;
+                result.solveMillis = -1;
+            }
+        });
+        CheckersMove move = search.makeMove(position.state.getLegalMoves(position.player));
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        if (search instanceof AlphaBetaSearch) {
+            result.nodes = ((AlphaBetaSearch) search).getNodeCount();
+        }
+        if (move != null) {
+            result.move = PositionFormat.moveText(move);
+            result.solved = position.isSolution(move);
+        }
+        if (!result.solved) {
+            result.solveNodes = -1;
+            result.solveMillis = -1;
+        } else if (result.solveNodes < 0) {
+            result.solveNodes = result.nodes; // Solved without a report, e.g. the only legal move
+            result.solveMillis = result.millis;
+        }
+        return result;
+    }
+
+    /**
+     * Print the positions whose result differs from the baseline, and the nodes to solve
+     * the positions solved in both.
+     */
+    private static void compare(List<String> baseline, List<String> current) {
+        Map<String, String[]> before = new LinkedHashMap<>();
+        for (String line : baseline) {
+            if (!line.startsWith("#")) {
+                String[] fields = line.split("\t");
+                before.put(fields[0] + "\t" + fields[1], fields);
+            }
+        }
+        int gained = 0;
+        int lost = 0;
+        long nodesBefore = 0;
+        long nodesNow = 0;
+        for (String line : current) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            String[] now = line.split("\t");
+            String[] then = before.get(now[0] + "\t" + now[1]);
+            if (then == null) {
+                System.out.printf("new      %s %s%n", now[1], now[0]);
+                continue;
+            }
+            boolean solvedThen = then[2].equals("1");
+            boolean solvedNow = now[2].equals("1");
+            if (solvedNow && !solvedThen) {
+                gained++;
+                System.out.printf("solved   %s %s: %s%n", now[1], now[0], now[3]);
+            } else if (solvedThen && !solvedNow) {
+                lost++;
+                System.out.printf("failed   %s %s: %s instead of %s%n", now[1], now[0], now[3], then[3]);
+            } else if (solvedNow) {
+                nodesBefore += Long.parseLong(then[6]);
+                nodesNow += Long.parseLong(now[6]);
+            }
+        }
+        System.out.printf("baseline: %d newly solved, %d newly failed, nodes to solve %d -> %d%n",
+                gained, lost, nodesBefore, nodesNow);
+    }
+}
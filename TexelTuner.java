@@ -0,0 +1,245 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Fits the weights of LinearEvaluator to game results (Texel's tuning method).
+ *
+ * Usage: java edu.iastate.cs472.proj2.TexelTuner positions-file weights-file [epochs]
+ *
+ * Every line of the positions file holds one position and the result of the game it
+ * was taken from: 32 characters for the playable squares in order ('.' empty, 'r' red
+ * piece, 'R' red king, 'b' black piece, 'B' black king), a space, and BLACK's score
+ * of the game (1, 0.5 or 0). Lines starting with '#' are ignored. Positions should be
+ * quiet, i.e. without a pending jump.
+ *
+ * The positions are kept as packed features, FEATURE_COUNT bytes plus one byte for
+ * the result each, so millions of them fit in a few megabytes. The predicted result
+ * of a position is sigmoid(K * score); K is fitted to the starting weights first,
+ * then the weights are fitted by Adam on the logistic loss. Each epoch evaluates and
+ * differentiates the corpus in parallel chunks on all cores.
+ */
+public class TexelTuner {
+    private static final int DEFAULT_EPOCHS = 300;
+    private static final double LEARNING_RATE = 2.0;
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+    private static final int CHUNKS_PER_CORE = 4;
+
+    private final byte[] features;
+    private final byte[] results; // BLACK's score times two: 0, 1 or 2
+    private final int size;
+    private final double[] scores;
+    private final int chunkSize;
+
+    TexelTuner(byte[] features, byte[] results, int size) {
+        this.features = features;
+        this.results = results;
+        this.size = size;
+        this.scores = new double[size];
+        int chunks = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CORE;
+        this.chunkSize = Math.max(1, (size + chunks - 1) / chunks);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TexelTuner positions-file weights-file [epochs]");
+            System.exit(1);
+        }
+        int epochs = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_EPOCHS;
+
+        long start = System.nanoTime();
+        TexelTuner tuner = load(Paths.get(args[0]));
+        System.out.printf("loaded %d positions in %d ms%n", tuner.size, (System.nanoTime() - start) / 1_000_000);
+
+        double[] weights = Arrays.stream(LinearEvaluator.DEFAULT_WEIGHTS).asDoubleStream().toArray();
+        double k = tuner.fitScale(weights);
+        System.out.printf("K = %.6f, loss = %.6f%n", k, tuner.loss(weights, k));
+
+        weights = tuner.tune(weights, k, epochs);
+
+        int[] rounded = new int[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            rounded[i] = (int) Math.round(weights[i]);
+            System.out.printf("%-12s %d%n", LinearEvaluator.FEATURE_NAMES[i], rounded[i]);
+        }
+        new LinearEvaluator(rounded).save(Paths.get(args[1]));
+        System.out.printf("done in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Read a positions file into packed features.
+     */
+    static TexelTuner load(Path file) throws IOException {
+        int capacity = 1 << 16;
+        byte[] features = new byte[capacity * LinearEvaluator.FEATURE_COUNT];
+        byte[] results = new byte[capacity];
+        int size = 0;
+
+        CheckersData state = new CheckersData();
+        int[] extracted = new int[LinearEvaluator.FEATURE_COUNT];
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                if (line.length() < CheckersData.SQUARES + 2) {
+                    throw new IOException("Line " + lineNumber + ": expected 32 squares and a result");
+                }
+                for (int square = 0; square < CheckersData.SQUARES; square++) {
+                    state.board[CheckersData.SQUARE_ROW[square]][CheckersData.SQUARE_COL[square]] = pieceOf(line.charAt(square), lineNumber);
+                }
+                double result = Double.parseDouble(line.substring(CheckersData.SQUARES + 1).trim());
+
+                if (size == capacity) {
+                    capacity *= 2;
+                    features = Arrays.copyOf(features, capacity * LinearEvaluator.FEATURE_COUNT);
+                    results = Arrays.copyOf(results, capacity);
+                }
+                LinearEvaluator.extractFeatures(state, extracted);
+                for (int f = 0; f < LinearEvaluator.FEATURE_COUNT; f++) {
+                    features[size * LinearEvaluator.FEATURE_COUNT + f] = (byte) extracted[f];
+                }
+                results[size] = (byte) Math.round(2 * result);
+                size++;
+            }
+        }
+        return new TexelTuner(features, results, size);
+    }
+
+    private static int pieceOf(char c, int lineNumber) throws IOException {
+        switch (c) {
+            case '.':
+                return CheckersData.EMPTY;
+            case 'r':
+                return CheckersData.RED;
+            case 'R':
+                return CheckersData.RED_KING;
+            case 'b':
+                return CheckersData.BLACK;
+            case 'B':
+                return CheckersData.BLACK_KING;
+            default:
+                throw new IOException("Line " + lineNumber + ": unknown square '" + c + "'");
+        }
+    }
+
+    /**
+     * Find the K that minimizes the loss of the given weights by golden-section search
+     * over log K. Ties go to the smaller K, since the loss is flat where every prediction
+     * is saturated.
+     */
+    double fitScale(double[] weights) {
+        double low = Math.log(1e-6);
+        double high = 0;
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        for (int i = 0; i < 60; i++) {
+            double a = high - ratio * (high - low);
+            double b = low + ratio * (high - low);
+            if (loss(weights, Math.exp(a)) <= loss(weights, Math.exp(b))) {
+                high = b;
+            } else {
+                low = a;
+            }
+        }
+        return Math.exp((low + high) / 2);
+    }
+
+    /**
+     * @return The mean logistic loss of the corpus.
+     */
+    double loss(double[] weights, double k) {
+        return IntStream.range(0, chunkCount()).parallel().mapToDouble(chunk -> {
+            int from = chunk * chunkSize;
+            int to = Math.min(size, from + chunkSize);
+            LinearEvaluator.evaluateBatch(features, weights, from, to, scores);
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                double p = clamp(sigmoid(k * scores[i]));
+                double y = results[i] / 2.0;
+                sum -= y * Math.log(p) + (1 - y) * Math.log(1 - p);
+            }
+            return sum;
+        }).sum() / size;
+    }
+
+    /**
+     * @return The gradient of the mean logistic loss with respect to the weights.
+     */
+    double[] gradient(double[] weights, double k) {
+        double[] gradient = IntStream.range(0, chunkCount()).parallel().mapToObj(chunk -> {
+            int from = chunk * chunkSize;
+            int to = Math.min(size, from + chunkSize);
+            LinearEvaluator.evaluateBatch(features, weights, from, to, scores);
+            double[] partial = new double[LinearEvaluator.FEATURE_COUNT];
+            for (int i = from; i < to; i++) {
+                double error = sigmoid(k * scores[i]) - results[i] / 2.0;
+                int offset = i * LinearEvaluator.FEATURE_COUNT;
+                for (int f = 0; f < LinearEvaluator.FEATURE_COUNT; f++) {
+                    partial[f] += error * features[offset + f];
+                }
+            }
+            return partial;
+        }).reduce(new double[LinearEvaluator.FEATURE_COUNT], TexelTuner::add);
+
+        for (int f = 0; f < gradient.length; f++) {
+            gradient[f] *= k / size;
+        }
+        return gradient;
+    }
+
+    /**
+     * Fit the weights by Adam, starting from the given ones.
+     */
+    double[] tune(double[] initial, double k, int epochs) {
+        double[] weights = initial.clone();
+        double[] m = new double[weights.length];
+        double[] v = new double[weights.length];
+
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            double[] gradient = gradient(weights, k);
+            for (int f = 0; f < weights.length; f++) {
+                m[f] = BETA1 * m[f] + (1 - BETA1) * gradient[f];
+                v[f] = BETA2 * v[f] + (1 - BETA2) * gradient[f] * gradient[f];
+                double mHat = m[f] / (1 - Math.pow(BETA1, epoch));
+                double vHat = v[f] / (1 - Math.pow(BETA2, epoch));
+                weights[f] -= LEARNING_RATE * mHat / (Math.sqrt(vHat) + EPSILON);
+            }
+            if (epoch % 50 == 0 || epoch == epochs) {
+                System.out.printf("epoch %4d  loss %.6f%n", epoch, loss(weights, k));
+            }
+        }
+        return weights;
+    }
+
+    private int chunkCount() {
+        return (size + chunkSize - 1) / chunkSize;
+    }
+
+    private static double[] add(double[] a, double[] b) {
+        double[] sum = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+    private static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
+    }
+
+    private static double clamp(double p) {
+        return Math.min(1 - 1e-12, Math.max(1e-12, p));
+    }
+}
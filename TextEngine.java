@@ -0,0 +1,387 @@
+package edu.iastate.cs472.proj2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A headless engine that speaks a line-based text protocol on standard input and output,
+ * in the manner of UCI, for analysis scripts and test harnesses. It never loads AWT.
+ *
+ * Usage: java edu.iastate.cs472.proj2.TextEngine
+ *
+ * Commands, one per line:
+ *   engine alphabeta|mcts    choose the search, alpha-beta by default
+ *   newgame                  set up the opening position
+ *   position startpos|fen FEN [moves M1 M2 ...]
+ *   go [depth N] [nodes N] [movetime MS] [wtime MS btime MS winc MS binc MS]
+ *      [movestogo N] [infinite] [multipv N]
+ *   stop                     end the search, which then reports its best move
+ *   isready                  answered with "readyok"
+ *   d                        print the position as FEN
+ *   quit
+ *
+ * Commands that change the position or the engine, and the end of the input, wait for a
+ * running search to finish, so a script may send a whole analysis at once; "stop" and
+ * "quit" end it early. A session on a connection (see EngineServer) stops its search
+ * instead when the connection ends.
+ *
+ * A search prints "info depth D score S nodes N time MS nps N pv M1 M2 ..." lines as it
+ * goes and ends with "bestmove M", or "bestmove none" if the side to move has no move.
+ * With "multipv N" the N best moves are reported before it, best first, as
+ * "info multipv I depth D score S pv M1 M2 ..." lines.
+ * Moves and positions are in PDN notation (see PositionFormat), and "startpos" is the
+ * opening with BLACK to move, as in PDN. wtime and winc are RED's clock, btime and binc
+ * BLACK's, shared out between the moves by a TimeManager. Without a limit, go searches
+ * as deep as the GUI does; "nodes" counts the playouts of MonteCarloTreeSearch and
+ * "depth" the iterations of AlphaBetaSearch.
+ *
+ * Searches run on an executor, whose threads each keep one engine of each kind, so an
+ * engine's transposition table and history outlive a search. EngineServer runs many
+ * sessions over one shared executor; their engines then serve every session, which is
+ * safe as the tables are keyed by position.
+ */
+public class TextEngine {
+    private static final int MCTS_NODE_BUDGET = 1 << 18; // Bounds the tree of a long MCTS search to a few hundred MB
+
+    private static final ThreadLocal<AlphaBetaSearch> ALPHA_BETA = ThreadLocal.withInitial(AlphaBetaSearch::new);
+    private static final ThreadLocal<MonteCarloTreeSearch> MONTE_CARLO = ThreadLocal.withInitial(MonteCarloTreeSearch::new);
+
+    private final PrintStream out;
+    private final ExecutorService searches;
+    private final long moveBudget;
+    private final AnalysisCache analysisCache;
+    private final MoveCache moveCache;
+    private final CheckersData position = new CheckersData();
+    private int player = CheckersData.BLACK;
+    private boolean monteCarlo;
+
+    private Future<?> searchTask;
+    private AtomicBoolean searchStop; // Set to stop the current search, whose engine other sessions share
+
+    /**
+     * A session that runs its searches on a thread of its own.
+     */
+    TextEngine(PrintStream out) {
+        this(out, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search");
+            thread.setDaemon(true);
+            return thread;
+        }), 0, null, null);
+    }
+
+    /**
+     * @param searches   runs the searches
+     * @param moveBudget the most milliseconds a search may take, counted from the go command,
+     *                   or 0 for no limit
+     * @param analysisCache where alpha-beta searches keep their results, or null
+     * @param moveCache  where both engines look up the moves of positions, or null
+     */
+    TextEngine(PrintStream out, ExecutorService searches, long moveBudget, AnalysisCache analysisCache, MoveCache moveCache) {
+        this.out = out;
+        this.searches = searches;
+        this.moveBudget = moveBudget;
+        this.analysisCache = analysisCache;
+        this.moveCache = moveCache;
+    }
+
+    public static void main(String[] args) throws IOException {
+        TextEngine engine = new TextEngine(System.out);
+        engine.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Handle commands until "quit" or the end of the input, which lets a running search
+     * finish, so a script may end with its last go.
+     */
+    void run(BufferedReader in) throws IOException {
+        run(in, true);
+    }
+
+    /**
+     * Handle the commands of a connection until "quit" or the end of the input. A search
+     * still running when the client goes away is stopped rather than waited for, so that
+     * it does not hold a search thread that other sessions need.
+     */
+    void runConnection(BufferedReader in) throws IOException {
+        run(in, false);
+    }
+
+    private void run(BufferedReader in, boolean finishSearch) throws IOException {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!handle(line.trim())) {
+                    return;
+                }
+            }
+            if (finishSearch) {
+                waitForSearch();
+            }
+        } finally {
+            stopSearch(); // Also when reading fails
+        }
+    }
+
+    /**
+     * @return False on "quit"
+     */
+    boolean handle(String line) {
+        String[] tokens = line.split("\\s+");
+        switch (tokens[0]) {
+            case "":
+                break;
+            case "quit":
+                return false;
+            case "isready":
+                send("readyok");
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "engine":
+                waitForSearch();
+                chooseEngine(tokens);
+                break;
+            case "newgame":
+                waitForSearch();
+                position.setUpGame();
+                player = CheckersData.BLACK;
+                break;
+            case "position":
+                waitForSearch();
+                setPosition(tokens);
+                break;
+            case "go":
+                waitForSearch();
+                go(tokens);
+                break;
+            case "d":
+                send(PositionFormat.toFen(position, player));
+                break;
+            default:
+                send("info string unknown command " + tokens[0]);
+                break;
+        }
+        return true;
+    }
+
+    private void chooseEngine(String[] tokens) {
+        String name = (tokens.length > 1) ? tokens[1] : "";
+        switch (name) {
+            case "alphabeta":
+                monteCarlo = false;
+                break;
+            case "mcts":
+                monteCarlo = true;
+                break;
+            default:
+                send("info string unknown engine " + name);
+                break;
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        if (tokens.length > 1 && tokens[1].equals("startpos")) {
+            position.setUpGame();
+            player = CheckersData.BLACK;
+            i = 2;
+        } else if (tokens.length > 2 && tokens[1].equals("fen")) {
+            try {
+                player = PositionFormat.fromFen(tokens[2], position);
+            } catch (IllegalArgumentException e) {
+                send("info string " + e.getMessage());
+                return;
+            }
+            i = 3;
+        } else {
+            send("info string expected startpos or fen");
+            return;
+        }
+
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                CheckersMove move = PositionFormat.parseMove(position, player, tokens[i]);
+                if (move == null) {
+                    send("info string illegal move " + tokens[i]);
+                    return;
+                }
+                position.makeMove(move);
+                player = (player == CheckersData.RED) ? CheckersData.BLACK : CheckersData.RED;
+            }
+        }
+    }
+
+    private void go(String[] tokens) {
+        int depth = 0;
+        int nodes = 0;
+        long moveTime = 0;
+        long[] time = new long[2];      // RED, BLACK
+        long[] increment = new long[2];
+        int movesToGo = 0;
+        boolean infinite = false;
+        int lines = 1;
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "depth":
+                        depth = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "nodes":
+                        nodes = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "movetime":
+                        moveTime = Long.parseLong(tokens[++i]);
+                        break;
+                    case "wtime":
+                        time[0] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "btime":
+                        time[1] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "winc":
+                        increment[0] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "binc":
+                        increment[1] = Long.parseLong(tokens[++i]);
+                        break;
+                    case "movestogo":
+                        movesToGo = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "infinite":
+                        infinite = true;
+                        break;
+                    case "multipv":
+                        lines = Integer.parseInt(tokens[++i]);
+                        break;
+                    default:
+                        send("info string unknown go parameter " + tokens[i]);
+                        break;
+                }
+            }
+        } catch (RuntimeException e) {
+            send("info string bad go command");
+            return;
+        }
+
+        long start = System.nanoTime(); // The clock runs while the search waits for a thread
+        int side = (player == CheckersData.BLACK) ? 1 : 0;
+        TimeManager clock = null;
+        if (moveTime == 0 && time[side] > 0 && !infinite) {
+            CheckersMove[] legalMoves = position.getLegalMoves(player);
+            clock = new TimeManager(start, time[side], increment[side], movesToGo, (legalMoves != null) ? legalMoves.length : 0);
+        }
+        long deadline = (moveTime > 0 && !infinite) ? start + moveTime * 1_000_000 : (clock != null) ? clock.deadline() : Long.MAX_VALUE;
+        if (moveBudget > 0) {
+            deadline = Math.min(deadline, start + moveBudget * 1_000_000);
+        }
+        boolean timed = infinite || deadline != Long.MAX_VALUE;
+        int maxDepth = (depth > 0) ? depth : timed ? AlphaBetaSearch.MAX_SEARCH_DEPTH : AlphaBetaSearch.SEARCH_DEPTH_LIMIT;
+        int playouts = (nodes > 0) ? nodes : timed ? Integer.MAX_VALUE : MonteCarloTreeSearch.SIMULATION_COUNT;
+        startSearch(start, deadline, clock, maxDepth, playouts, lines);
+    }
+
+    private void startSearch(long start, long deadline, TimeManager clock, int maxDepth, int playouts, int lines) {
+        CheckersData state = new CheckersData(position);
+        int side = player;
+        boolean useMonteCarlo = monteCarlo;
+        AtomicBoolean stop = new AtomicBoolean();
+        searchStop = stop;
+        searchTask = searches.submit(() -> {
+            AdversarialSearch engine;
+            if (useMonteCarlo) {
+                MonteCarloTreeSearch mcts = MONTE_CARLO.get();
+                mcts.setPlayoutLimit(playouts);
+                mcts.setNodeBudget(MCTS_NODE_BUDGET, true);
+                engine = mcts;
+            } else {
+                AlphaBetaSearch alphaBeta = ALPHA_BETA.get();
+                alphaBeta.setMaxDepth(maxDepth);
+                alphaBeta.setAnalysisCache(analysisCache);
+                engine = alphaBeta;
+            }
+            engine.setMoveCache(moveCache);
+            engine.setCheckersData(state);
+            engine.setPlayer(side);
+            engine.setDeadline(deadline);
+            engine.setTimeManager(clock);
+            engine.setStopSignal(stop);
+            engine.setSearchListener((depthDone, score, nodeCount, line) -> info(start, depthDone, score, nodeCount, line));
+            CheckersMove move;
+            if (lines > 1) {
+                AnalysisLine[] analysis = engine.analyze(state.getLegalMoves(side), lines);
+                for (int i = 0; i < analysis.length; i++) {
+                    sendLine(i + 1, analysis[i]);
+                }
+                move = (analysis.length > 0) ? analysis[0].move : null;
+            } else {
+                move = engine.makeMove(state.getLegalMoves(side));
+            }
+            engine.setStopSignal(null);
+            engine.setSearchListener(null);
+            if (moveCache != null) {
+                send(String.format("info string move cache hits %.1f%% evictions %d", 100 * moveCache.hitRate(), moveCache.evictions()));
+            }
+            send("bestmove " + ((move != null) ? PositionFormat.moveText(move) : "none"));
+        });
+    }
+
+    private void info(long start, int depth, int score, long nodes, CheckersMove[] line) {
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        StringBuilder info = new StringBuilder();
+        info.append("info depth ").append(depth).append(" score ").append(score)
+                .append(" nodes ").append(nodes).append(" time ").append(millis)
+                .append(" nps ").append(nodes * 1000 / Math.max(millis, 1)).append(" pv");
+        for (CheckersMove move : line) {
+            info.append(' ').append(PositionFormat.moveText(move));
+        }
+        send(info.toString());
+    }
+
+    private void sendLine(int rank, AnalysisLine line) {
+        StringBuilder info = new StringBuilder();
+        info.append("info multipv ").append(rank).append(" depth ").append(line.depth)
+                .append(" score ").append(line.score).append(" pv");
+        for (CheckersMove move : line.principalVariation) {
+            info.append(' ').append(PositionFormat.moveText(move));
+        }
+        send(info.toString());
+    }
+
+    /**
+     * Stop a running search and wait for it to report its move.
+     */
+    private void stopSearch() {
+        if (searchTask != null) {
+            searchStop.set(true);
+            waitForSearch();
+        }
+    }
+
+    private void waitForSearch() {
+        if (searchTask == null) {
+            return;
+        }
+        try {
+            searchTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            send("info string search failed: " + e.getCause());
+        }
+        searchTask = null;
+    }
+
+    private synchronized void send(String line) {
+        out.println(line);
+        out.flush();
+    }
+}
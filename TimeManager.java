@@ -0,0 +1,99 @@
+package edu.iastate.cs472.proj2;
+
+/**
+ * Shares out a game clock between moves. From the time left and the increment it sets a
+ * target time for the move and a hard limit that the search must never pass (the
+ * deadline of AdversarialSearch). The search reports its best move and score as it
+ * goes, and stops once it has used its target; the target grows while the best move
+ * keeps changing or the score falls, up to the hard limit, and is halved when the side
+ * to move has at most two moves, since there is little to choose between.
+ *
+ * A manager serves a single move; TextEngine makes one per timed go command.
+ */
+class TimeManager {
+    static final int MOVES_TO_GO = 30;            // Expected moves left in the game when the clock does not say
+    private static final long MOVE_OVERHEAD = 30; // Milliseconds kept back per move for communication and pauses
+    private static final double MAX_SHARE = 0.4;  // Most of the time left one move may use
+    private static final double MAX_STRETCH = 5;  // Most the target may grow, as a multiple of the planned time
+    // A fall of this much from the best score so far doubles the target. With the built-in
+    // evaluation of AlphaBetaSearch that is two men lost from the opening and about one once
+    // a dozen men are left; for MonteCarloTreeSearch, a win rate falling from 50% to 44%.
+    private static final int SCORE_DROP_LIMIT = 100;
+
+    private final long start;
+    private final long planned;  // Nanoseconds the move should take if the search is calm
+    private final long maximum;  // Nanoseconds the move may take at most
+    private int lastBestMove = -1;
+    private int bestScore = Integer.MIN_VALUE;
+    private double instability;  // Changes of the best move, each worth half as much at every later update
+    private double scoreFactor = 1;
+
+    /**
+     * @param start      System.nanoTime when the move's clock started
+     * @param remaining  milliseconds left on the side's clock
+     * @param increment  milliseconds added to the clock after each move
+     * @param movesToGo  moves to make before the clock is next filled up, or 0 if unknown
+     * @param legalMoves the number of legal moves of the side to move
+     */
+    TimeManager(long start, long remaining, long increment, int movesToGo, int legalMoves) {
+        this.start = start;
+        long usable = Math.max(remaining - MOVE_OVERHEAD, remaining / 10);
+        long limit = (long) (usable * ((movesToGo == 1) ? 1 - MAX_SHARE / 4 : MAX_SHARE));
+        long target = usable / ((movesToGo > 0) ? movesToGo : MOVES_TO_GO) + increment * 3 / 4;
+        if (legalMoves <= 2) {
+            target /= 2;
+        }
+        target = Math.min(target, limit);
+        planned = target * 1_000_000;
+        maximum = Math.max(Math.min((long) (target * MAX_STRETCH), limit), 1) * 1_000_000;
+    }
+
+    /**
+     * @return The System.nanoTime after which the search must stop
+     */
+    long deadline() {
+        return start + maximum;
+    }
+
+    /**
+     * Tell the manager the best move and score found so far, after every iteration of an
+     * iterative search or now and then during a search without iterations.
+     *
+     * @param bestMove index of the best move in the legal move list
+     * @param score    its score for the side to move
+     */
+    void update(int bestMove, int score) {
+        instability /= 2;
+        if (lastBestMove >= 0 && bestMove != lastBestMove) {
+            instability += 1;
+        }
+        lastBestMove = bestMove;
+        bestScore = Math.max(bestScore, score);
+        int drop = Math.min(Math.max(bestScore - score, 0), SCORE_DROP_LIMIT);
+        scoreFactor = 1 + (double) drop / SCORE_DROP_LIMIT;
+    }
+
+    /**
+     * @return Nanoseconds the move should take by now, with the instability and the fall
+     * of the score seen so far
+     */
+    long target() {
+        return Math.min((long) (planned * (1 + instability) * scoreFactor), maximum);
+    }
+
+    /**
+     * @return Nanoseconds since the move's clock started
+     */
+    long elapsed() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @param share the part of the target that must be left to go on, e.g. for the next
+     *              iteration of an iterative search, which takes longer than all before it
+     * @return Whether the search should stop and play its best move
+     */
+    boolean isDone(double share) {
+        return elapsed() > target() * (1 - share);
+    }
+}
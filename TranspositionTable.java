@@ -0,0 +1,94 @@
+package edu.iastate.cs472.proj2;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size transposition table shared by the main alpha-beta search and its
+ * quiescence search. Entries are indexed by the low bits of a position's Zobrist
+ * key (see CheckersData.hashKey) and hold the searched depth, the score, whether
+ * the score is exact or only a bound, and the index of the best move in the
+ * position's legal move list.
+ */
+public class TranspositionTable {
+    /**
+     * Bound types of a stored score. NONE marks an empty slot.
+     */
+    static final int NONE = 0, EXACT = 1, LOWER_BOUND = 2, UPPER_BOUND = 3;
+
+    private final long[] keys;
+    private final int[] scores;
+    private final byte[] depths;
+    private final byte[] bounds;
+    private final byte[] bestMoves;
+    private final int mask;
+
+    /**
+     * @param size number of entries, rounded up to a power of two
+     */
+    TranspositionTable(int size) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        keys = new long[capacity];
+        scores = new int[capacity];
+        depths = new byte[capacity];
+        bounds = new byte[capacity];
+        bestMoves = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @param key Zobrist key of the position
+     * @return the slot holding the position, or -1 if it is not stored
+     */
+    int find(long key) {
+        int slot = (int) key & mask;
+        if (bounds[slot] != NONE && keys[slot] == key) {
+            return slot;
+        }
+        return -1;
+    }
+
+    int score(int slot) {
+        return scores[slot];
+    }
+
+    int depth(int slot) {
+        return depths[slot];
+    }
+
+    int bound(int slot) {
+        return bounds[slot];
+    }
+
+    int bestMove(int slot) {
+        return bestMoves[slot] & 0xFF;
+    }
+
+    /**
+     * Store a search result. A slot holding the same position is only overwritten by
+     * a search that was at least as deep; a different position is always replaced.
+     *
+     * @param key      Zobrist key of the position
+     * @param depth    remaining depth the position was searched to, 0 for quiescence
+     * @param score    the score of the position
+     * @param bound    EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param bestMove index of the best move in the legal move list
+     */
+    void store(long key, int depth, int score, int bound, int bestMove) {
+        int slot = (int) key & mask;
+        if (bounds[slot] != NONE && keys[slot] == key && depths[slot] > depth) {
+            return;
+        }
+        keys[slot] = key;
+        scores[slot] = score;
+        depths[slot] = (byte) depth;
+        bounds[slot] = (byte) bound;
+        bestMoves[slot] = (byte) bestMove;
+    }
+
+    /**
+     * Remove every entry.
+     */
+    void clear() {
+        Arrays.fill(bounds, (byte) NONE);
+    }
+}
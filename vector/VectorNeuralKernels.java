@@ -0,0 +1,74 @@
+package edu.iastate.cs472.proj2;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * NeuralKernels on the Java Vector API, using the widest int16 vectors of the CPU.
+ * This class needs the jdk.incubator.vector module both to compile and to run, so it
+ * lives in vector/ and is compiled on its own against the other classes (see README.md).
+ * It is only ever loaded by NeuralKernels.get, which falls back to the scalar kernels
+ * when the class or the module is missing.
+ */
+class VectorNeuralKernels extends NeuralKernels {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    String name() {
+        return "vector-" + SHORTS.vectorBitSize();
+    }
+
+    @Override
+    void add(short[] accumulator, short[] weights, int offset, int length) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, i)
+                    .add(ShortVector.fromArray(SHORTS, weights, offset + i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < length; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    void subtract(short[] accumulator, short[] weights, int offset, int length) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, i)
+                    .sub(ShortVector.fromArray(SHORTS, weights, offset + i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < length; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    int clippedDot(short[] accumulator, short[] weights, int length, int ceiling) {
+        IntVector sum = IntVector.zero(INTS);
+        int parts = SHORTS.length() / INTS.length();
+        int i = 0;
+        for (int bound = SHORTS.loopBound(length); i < bound; i += SHORTS.length()) {
+            ShortVector activation = ShortVector.fromArray(SHORTS, accumulator, i)
+                    .max((short) 0)
+                    .min((short) ceiling);
+            ShortVector weight = ShortVector.fromArray(SHORTS, weights, i);
+            // Widen to int before multiplying, the products do not fit in 16 bits
+            for (int part = 0; part < parts; part++) {
+                IntVector a = (IntVector) activation.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector w = (IntVector) weight.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(a.mul(w));
+            }
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            int activation = Math.min(Math.max(accumulator[i], 0), ceiling);
+            result += activation * weights[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,76 @@
+package edu.iastate.cs472.proj2;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * PlayoutKernels on the Java Vector API, one game per int lane of the widest vectors of
+ * the CPU. This class needs the jdk.incubator.vector module both to compile and to run,
+ * so it lives in vector/ and is compiled on its own against the other classes (see
+ * README.md). It is only ever loaded by PlayoutKernels.get, which falls back to the
+ * scalar kernels when the class or the module is missing.
+ */
+class VectorPlayoutKernels extends PlayoutKernels {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    String name() {
+        return "vector-" + INTS.vectorBitSize();
+    }
+
+    @Override
+    void moveMasks(int[] men, int[] kings, int[] enemyMen, int[] enemyKings, int count, int[][] jumps, int[][] steps) {
+        int i = 0;
+        for (int bound = INTS.loopBound(count); i < bound; i += INTS.length()) {
+            IntVector king = IntVector.fromArray(INTS, kings, i);
+            IntVector own = IntVector.fromArray(INTS, men, i).or(king);
+            IntVector enemy = IntVector.fromArray(INTS, enemyMen, i).or(IntVector.fromArray(INTS, enemyKings, i));
+            IntVector empty = own.or(enemy).not();
+            upRight(empty).and(own).intoArray(steps[DOWN_LEFT], i);
+            upLeft(empty).and(own).intoArray(steps[DOWN_RIGHT], i);
+            downRight(empty).and(king).intoArray(steps[UP_LEFT], i);
+            downLeft(empty).and(king).intoArray(steps[UP_RIGHT], i);
+            upRight(upRight(empty).and(enemy)).and(own).intoArray(jumps[DOWN_LEFT], i);
+            upLeft(upLeft(empty).and(enemy)).and(own).intoArray(jumps[DOWN_RIGHT], i);
+            downRight(downRight(empty).and(enemy)).and(king).intoArray(jumps[UP_LEFT], i);
+            downLeft(downLeft(empty).and(enemy)).and(king).intoArray(jumps[UP_RIGHT], i);
+        }
+        moveMasks(men, kings, enemyMen, enemyKings, i, count, jumps, steps);
+    }
+
+    @Override
+    void nextRandom(int[] seeds, int count) {
+        int i = 0;
+        for (int bound = INTS.loopBound(count); i < bound; i += INTS.length()) {
+            IntVector x = IntVector.fromArray(INTS, seeds, i);
+            x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHL, 13));
+            x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 17));
+            x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHL, 5));
+            x.intoArray(seeds, i);
+        }
+        for (; i < count; i++) {
+            seeds[i] = xorshift(seeds[i]);
+        }
+    }
+
+    private static IntVector downLeft(IntVector squares) {
+        return squares.and(EVEN_ROWS & ~LEFT_EDGE).lanewise(VectorOperators.LSHL, 3)
+                .or(squares.and(ODD_ROWS).lanewise(VectorOperators.LSHL, 4));
+    }
+
+    private static IntVector downRight(IntVector squares) {
+        return squares.and(EVEN_ROWS).lanewise(VectorOperators.LSHL, 4)
+                .or(squares.and(ODD_ROWS & ~RIGHT_EDGE).lanewise(VectorOperators.LSHL, 5));
+    }
+
+    private static IntVector upLeft(IntVector squares) {
+        return squares.and(EVEN_ROWS & ~LEFT_EDGE).lanewise(VectorOperators.LSHR, 5)
+                .or(squares.and(ODD_ROWS).lanewise(VectorOperators.LSHR, 4));
+    }
+
+    private static IntVector upRight(IntVector squares) {
+        return squares.and(EVEN_ROWS).lanewise(VectorOperators.LSHR, 4)
+                .or(squares.and(ODD_ROWS & ~RIGHT_EDGE).lanewise(VectorOperators.LSHR, 3));
+    }
+}